@@ -0,0 +1,182 @@
+package com.zhanghao.zoomlayout.benchmark;
+
+import com.zhanghao.zoomlayout.FlingScroller;
+import com.zhanghao.zoomlayout.GestureMath;
+import com.zhanghao.zoomlayout.ViewportTransform;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a recorded gesture trace through the per-event math of ZoomLayout.
+ * <p>
+ * Scores are per touch event; run with the gc profiler (enabled in build.gradle) to get
+ * allocations per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GestureMathBenchmark {
+    private static final String TRACE = "pan_pinch_fling.trace";
+    private static final int TRACE_EVENTS = 267;
+    private static final float SCALE_TOUCH_SLOP = 16;
+    private static final float MAX_FLING_VELOCITY = 8000;
+    private static final long VELOCITY_WINDOW = 50;
+
+    private TextGestureTrace mTrace;
+    private ViewportTransform mTransform;
+    private FlingScroller mScroller;
+
+    @Setup
+    public void loadTrace() throws IOException {
+        mTrace = TextGestureTrace.load(TRACE);
+        if (mTrace.size != TRACE_EVENTS) {
+            throw new IllegalStateException("update TRACE_EVENTS to " + mTrace.size);
+        }
+        mScroller = new FlingScroller();
+        mTransform = new ViewportTransform();
+        mTransform.setScaleRange(0.5f, 4f);
+        mTransform.setContentBounds(0, 0, 1080, 1920);
+        mTransform.setScrollBounds(0, 0, 1080, 1920, 262);
+    }
+
+    /**
+     * The pinch slop check done in {@code onInterceptTouchEvent} for every two pointer move.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TRACE_EVENTS)
+    public int scaleSlop() {
+        TextGestureTrace t = mTrace;
+        int intercepted = 0;
+        for (int i = 0; i < t.size; i++) {
+            if (t.pointerCount[i] == 2
+                    && GestureMath.distance(t.x0[i], t.y0[i], t.x1[i], t.y1[i]) >= SCALE_TOUCH_SLOP) {
+                intercepted++;
+            }
+        }
+        return intercepted;
+    }
+
+    /**
+     * The previous slop check with {@code Math.pow} on int-cast coordinates, kept as a baseline.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TRACE_EVENTS)
+    public int scaleSlopLegacy() {
+        TextGestureTrace t = mTrace;
+        int intercepted = 0;
+        for (int i = 0; i < t.size; i++) {
+            if (t.pointerCount[i] == 2) {
+                int x1 = (int) t.x0[i];
+                int y1 = (int) t.y0[i];
+                int x2 = (int) t.x1[i];
+                int y2 = (int) t.y1[i];
+                int length = (int) Math.sqrt(Math.pow((x1 - x2), 2) + Math.pow((y1 - y2), 2));
+                if (length >= SCALE_TOUCH_SLOP) {
+                    intercepted++;
+                }
+            }
+        }
+        return intercepted;
+    }
+
+    /**
+     * Pan and pinch transform writes with scale-aware clamping, as done in {@code onTouchEvent}
+     * and {@code onScale}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TRACE_EVENTS)
+    public float panAndPinch() {
+        TextGestureTrace t = mTrace;
+        ViewportTransform transform = mTransform;
+        transform.set(1, 0, 0);
+        float lastX = 0;
+        float lastY = 0;
+        float lastSpan = 0;
+        for (int i = 0; i < t.size; i++) {
+            switch (t.action[i]) {
+                case TextGestureTrace.DOWN:
+                case TextGestureTrace.POINTER_UP:
+                    lastX = t.x0[i];
+                    lastY = t.y0[i];
+                    break;
+                case TextGestureTrace.POINTER_DOWN:
+                    lastSpan = GestureMath.distance(t.x0[i], t.y0[i], t.x1[i], t.y1[i]);
+                    break;
+                case TextGestureTrace.MOVE:
+                    if (t.pointerCount[i] == 2) {
+                        float span = GestureMath.distance(t.x0[i], t.y0[i], t.x1[i], t.y1[i]);
+                        transform.scaleBy(span / lastSpan, (t.x0[i] + t.x1[i]) / 2, (t.y0[i] + t.y1[i]) / 2);
+                        lastSpan = span;
+                    } else {
+                        transform.translateBy(t.x0[i] - lastX, t.y0[i] - lastY);
+                        lastX = t.x0[i];
+                        lastY = t.y0[i];
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return transform.getTranslationX() + transform.getTranslationY() + transform.getScale();
+    }
+
+    /**
+     * Fling target computation for every release in the trace.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TRACE_EVENTS)
+    public float flingTarget() {
+        TextGestureTrace t = mTrace;
+        ViewportTransform transform = mTransform;
+        transform.set(1, 0, 0);
+        float sum = 0;
+        for (int i = 0; i < t.size; i++) {
+            if (t.action[i] != TextGestureTrace.UP) {
+                continue;
+            }
+            int from = i;
+            while (from > 0 && t.action[from - 1] == TextGestureTrace.MOVE && t.time[i] - t.time[from - 1] <= VELOCITY_WINDOW) {
+                from--;
+            }
+            long dt = Math.max(1, t.time[i] - t.time[from]);
+            float vx = GestureMath.clampVelocity((t.x0[i] - t.x0[from]) * 1000 / dt, MAX_FLING_VELOCITY);
+            float vy = GestureMath.clampVelocity((t.y0[i] - t.y0[from]) * 1000 / dt, MAX_FLING_VELOCITY);
+            mScroller.fling(t.time[i], transform.getTranslationX(), transform.getTranslationY(), vx, vy,
+                    transform.getMinTranslationX(), transform.getMaxTranslationX(),
+                    transform.getMinTranslationY(), transform.getMaxTranslationY(), 0);
+            sum += mScroller.getFinalX() + mScroller.getFinalY();
+        }
+        return sum;
+    }
+
+    /**
+     * One fling advanced frame by frame as {@code computeScroll()} does, per fling.
+     */
+    @Benchmark
+    public float flingFrames() {
+        ViewportTransform transform = mTransform;
+        mScroller.fling(0, 0, 0, 4000, -6000, -100000, 100000, -100000, 100000, 0);
+        float sum = 0;
+        for (long time = 16; mScroller.computeScrollOffset(time); time += 16) {
+            transform.set(1, mScroller.getCurrX(), mScroller.getCurrY());
+            sum += transform.getTranslationX();
+        }
+        return sum;
+    }
+}
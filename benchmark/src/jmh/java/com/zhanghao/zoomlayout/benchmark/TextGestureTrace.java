@@ -0,0 +1,94 @@
+package com.zhanghao.zoomlayout.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Touch events recorded from a gesture session, loaded from a text trace in the classpath.
+ * <p>
+ * Each line is {@code time action x0 y0 [x1 y1]} with time in milliseconds and action one of
+ * DOWN, POINTER_DOWN, MOVE, POINTER_UP, UP. Lines starting with {@code #} are comments.
+ * <p>
+ * Hand-editable counterpart of the binary {@code com.zhanghao.zoomlayout.GestureTrace} a
+ * device records, which carries the layout state as well and is replayed by the library
+ * tests instead.
+ */
+final class TextGestureTrace {
+    static final int DOWN = 0;
+    static final int POINTER_DOWN = 1;
+    static final int MOVE = 2;
+    static final int POINTER_UP = 3;
+    static final int UP = 4;
+
+    final int size;
+    final long[] time;
+    final int[] action;
+    final int[] pointerCount;
+    final float[] x0;
+    final float[] y0;
+    final float[] x1;
+    final float[] y1;
+
+    private TextGestureTrace(List<String[]> events) {
+        size = events.size();
+        time = new long[size];
+        action = new int[size];
+        pointerCount = new int[size];
+        x0 = new float[size];
+        y0 = new float[size];
+        x1 = new float[size];
+        y1 = new float[size];
+        for (int i = 0; i < size; i++) {
+            String[] e = events.get(i);
+            time[i] = Long.parseLong(e[0]);
+            action[i] = parseAction(e[1]);
+            pointerCount[i] = (e.length - 2) / 2;
+            x0[i] = Float.parseFloat(e[2]);
+            y0[i] = Float.parseFloat(e[3]);
+            if (pointerCount[i] > 1) {
+                x1[i] = Float.parseFloat(e[4]);
+                y1[i] = Float.parseFloat(e[5]);
+            }
+        }
+    }
+
+    static TextGestureTrace load(String name) throws IOException {
+        InputStream in = TextGestureTrace.class.getResourceAsStream("/traces/" + name);
+        if (in == null) {
+            throw new IOException("trace not found: " + name);
+        }
+        List<String[]> events = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                events.add(line.split("\\s+"));
+            }
+        }
+        return new TextGestureTrace(events);
+    }
+
+    private static int parseAction(String action) {
+        switch (action) {
+            case "DOWN":
+                return DOWN;
+            case "POINTER_DOWN":
+                return POINTER_DOWN;
+            case "MOVE":
+                return MOVE;
+            case "POINTER_UP":
+                return POINTER_UP;
+            case "UP":
+                return UP;
+            default:
+                throw new IllegalArgumentException("unknown action " + action);
+        }
+    }
+}
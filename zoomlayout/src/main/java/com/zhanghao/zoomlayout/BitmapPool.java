@@ -0,0 +1,149 @@
+package com.zhanghao.zoomlayout;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of mutable bitmaps bucketed by size and config, to decode into with
+ * {@code BitmapFactory.Options#inBitmap} instead of allocating a new bitmap for every tile.
+ * <p>
+ * The pool is bounded in bytes, drops the least recently added bitmaps first and shrinks
+ * in steps when the system reports memory pressure. It is thread safe.
+ */
+public class BitmapPool {
+    private static final int DEFAULT_MEMORY_DIVIDER = 16;
+
+    private static BitmapPool sDefault;
+
+    private final Map<Long, ArrayList<Bitmap>> mBuckets = new HashMap<>();
+    private final ArrayList<Bitmap> mOrder = new ArrayList<>();
+    private final int mMaxBytes;
+    private int mBytes;
+
+    /**
+     * Returns the pool shared by the views of this library, bounded by a sixteenth of the
+     * heap and trimmed on memory pressure.
+     */
+    public static synchronized BitmapPool getDefault(Context context) {
+        if (sDefault == null) {
+            final BitmapPool pool = new BitmapPool((int) (Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_DIVIDER));
+            context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    pool.trimMemory(level);
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                }
+
+                @Override
+                public void onLowMemory() {
+                    pool.clear();
+                }
+            });
+            sDefault = pool;
+        }
+        return sDefault;
+    }
+
+    public BitmapPool(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a pooled bitmap of exactly this size and config, or null. Its content is
+     * undefined.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        ArrayList<Bitmap> bucket = mBuckets.get(key(width, height, config));
+        if (bucket == null || bucket.isEmpty()) {
+            return null;
+        }
+        Bitmap bitmap = bucket.remove(bucket.size() - 1);
+        mOrder.remove(bitmap);
+        mBytes -= bitmap.getAllocationByteCount();
+        return bitmap;
+    }
+
+    /**
+     * Offers a bitmap that is not used anymore. Bitmaps that cannot be reused or do not fit
+     * are left to the garbage collector.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() == null) {
+            return;
+        }
+        int bytes = bitmap.getAllocationByteCount();
+        if (bytes > mMaxBytes) {
+            return;
+        }
+        long key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayList<Bitmap> bucket = mBuckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            mBuckets.put(key, bucket);
+        }
+        bucket.add(bitmap);
+        mOrder.add(bitmap);
+        mBytes += bytes;
+        trimToSize(mMaxBytes);
+    }
+
+    public synchronized void trimToSize(int maxBytes) {
+        while (mBytes > maxBytes && !mOrder.isEmpty()) {
+            Bitmap bitmap = mOrder.remove(0);
+            mBuckets.get(key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig())).remove(bitmap);
+            mBytes -= bitmap.getAllocationByteCount();
+        }
+    }
+
+    /**
+     * Shrinks the pool for a {@link ComponentCallbacks2} trim level.
+     */
+    public void trimMemory(int level) {
+        trimToSize((int) (mMaxBytes * retainedFraction(level)));
+    }
+
+    public void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized int size() {
+        return mBytes;
+    }
+
+    public int maxSize() {
+        return mMaxBytes;
+    }
+
+    /**
+     * How much of a cache to keep for a {@link ComponentCallbacks2} trim level: everything
+     * goes once the UI is hidden, while running it is trimmed in steps.
+     */
+    static float retainedFraction(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return 0;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.25f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return 0.75f;
+        }
+        return 1;
+    }
+
+    private static long key(int width, int height, Bitmap.Config config) {
+        return ((long) config.ordinal() << 48) | ((long) height << 24) | width;
+    }
+}
@@ -0,0 +1,66 @@
+package com.zhanghao.zoomlayout;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.os.Build;
+import android.view.View;
+
+/**
+ * Recording of the child's drawing that {@link ZoomLayout} replays under the viewport
+ * transform, so transform changes do not run the child's draw code again. The recording is
+ * only redone after the child invalidated itself.
+ * <p>
+ * Every recording is a new {@link Picture} that is never modified afterwards, so it can be
+ * rasterized on a background thread. Replaying a picture on a hardware canvas requires
+ * API 23, below that the child is drawn normally when hardware accelerated.
+ */
+class ChildPicture {
+    private Picture mPicture;
+    private boolean mDirty = true;
+
+    void invalidate() {
+        mDirty = true;
+    }
+
+    /**
+     * Returns true if a recording of {@code child} can be drawn on {@code canvas}.
+     */
+    boolean canDraw(Canvas canvas, View child) {
+        return child.getWidth() > 0 && child.getHeight() > 0
+                && (!canvas.isHardwareAccelerated() || Build.VERSION.SDK_INT >= Build.VERSION_CODES.M);
+    }
+
+    /**
+     * Returns the recording of {@code child}, recording it first if needed.
+     */
+    Picture record(View child) {
+        int width = child.getWidth();
+        int height = child.getHeight();
+        if (mPicture == null || mDirty || mPicture.getWidth() != width || mPicture.getHeight() != height) {
+            Picture picture = new Picture();
+            Canvas recording = picture.beginRecording(width, height);
+            child.draw(recording);
+            picture.endRecording();
+            mPicture = picture;
+            mDirty = false;
+        }
+        return mPicture;
+    }
+
+    /**
+     * Replays the last recording under the transform.
+     */
+    void draw(Canvas canvas, ViewportTransform transform) {
+        int saveCount = canvas.save();
+        canvas.translate(transform.getContentLeft() + transform.getTranslationX(),
+                transform.getContentTop() + transform.getTranslationY());
+        canvas.scale(transform.getScale(), transform.getScale());
+        canvas.drawPicture(mPicture);
+        canvas.restoreToCount(saveCount);
+    }
+
+    void release() {
+        mPicture = null;
+        mDirty = true;
+    }
+}
@@ -0,0 +1,94 @@
+package com.zhanghao.zoomlayout;
+
+import java.util.Arrays;
+
+/**
+ * The children {@link ZoomCanvasLayout} draws: the ones its {@link QuadTree} finds in the
+ * viewport, or all of them while the whole content is drawn, e.g. into the thumbnail of a
+ * {@link ZoomMinimapView}.
+ * <p>
+ * This class has no Android dependencies and is not thread safe.
+ */
+class CulledChildren {
+    private final QuadTree mIndex = new QuadTree();
+    private int[] mVisible = new int[0];
+    private int[] mQueryResult = new int[0];
+    private int mVisibleCount;
+    private int mChildCount;
+    private boolean mWholeContent;
+
+    /**
+     * Starts indexing {@code childCount} children laid out in {@code width} x {@code height}.
+     */
+    void reset(int childCount, float width, float height) {
+        mIndex.reset(0, 0, width, height);
+        mChildCount = childCount;
+        if (mQueryResult.length < childCount) {
+            mQueryResult = new int[childCount];
+            mVisible = new int[childCount];
+            mVisibleCount = 0;
+        }
+    }
+
+    void insert(int index, float left, float top, float right, float bottom) {
+        mIndex.insert(index, left, top, right, bottom);
+    }
+
+    /**
+     * Keeps the children intersecting the viewport.
+     *
+     * @param force report a change even if the same children are visible
+     * @return true if the visible children changed
+     */
+    boolean cull(float left, float top, float right, float bottom, boolean force) {
+        int count = mIndex.query(left, top, right, bottom, mQueryResult);
+        // draw in child order, the index does not keep it
+        Arrays.sort(mQueryResult, 0, count);
+        if (!force && count == mVisibleCount && rangeEquals(mQueryResult, mVisible, count)) {
+            return false;
+        }
+        int[] visible = mVisible;
+        mVisible = mQueryResult;
+        mQueryResult = visible;
+        mVisibleCount = count;
+        return true;
+    }
+
+    private static boolean rangeEquals(int[] a, int[] b, int count) {
+        for (int i = 0; i < count; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getVisibleCount() {
+        return mVisibleCount;
+    }
+
+    /**
+     * While set every child is drawn, culled or not.
+     */
+    void setWholeContent(boolean wholeContent) {
+        mWholeContent = wholeContent;
+    }
+
+    int getDrawCount() {
+        return mWholeContent ? mChildCount : mVisibleCount;
+    }
+
+    /**
+     * Returns the index of the {@code i}th child to draw, in child order.
+     */
+    int getDrawIndex(int i) {
+        return mWholeContent ? i : mVisible[i];
+    }
+
+    /**
+     * Returns the index of the topmost child at {@code (x, y)}, or -1.
+     */
+    int findTopmost(float x, float y) {
+        return mIndex.findTopmost(x, y);
+    }
+}
@@ -0,0 +1,195 @@
+package com.zhanghao.zoomlayout;
+
+import android.os.Process;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of background threads for decoding and rasterizing content, run in
+ * priority order: visible content first, then content near the viewport, then prefetches.
+ * <p>
+ * Queued tasks can be cancelled or re-prioritized, running tasks are expected to check
+ * {@link Task#isCancelled()} between expensive steps. Results are handed back on the main
+ * thread in one batch per frame, so a burst of finished tiles causes one redraw.
+ * <p>
+ * Must be created on the main thread.
+ */
+public class DecodeScheduler {
+    private static final String TAG = "DecodeScheduler";
+    private static final boolean DEBUG = false;
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_NEAR = 1;
+    public static final int PRIORITY_PREFETCH = 2;
+    private static final int MAX_DEFAULT_THREADS = 4;
+
+    private static DecodeScheduler sDefault;
+
+    private final PriorityBlockingQueue<Task<?>> mQueue = new PriorityBlockingQueue<>();
+    private final ConcurrentLinkedQueue<Task<?>> mFinished = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mDeliveryPosted = new AtomicBoolean();
+    private final AtomicLong mSequence = new AtomicLong();
+    private final Choreographer mChoreographer;
+    private final int mThreadCount;
+    private boolean mStarted;
+
+    /**
+     * Returns the scheduler shared by the views of this library. It leaves one core to the
+     * UI thread and uses at most {@value #MAX_DEFAULT_THREADS} threads. Call on the main thread.
+     */
+    public static DecodeScheduler getDefault() {
+        if (sDefault == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            sDefault = new DecodeScheduler(Math.max(1, Math.min(MAX_DEFAULT_THREADS, cores - 1)));
+        }
+        return sDefault;
+    }
+
+    public DecodeScheduler(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be positive: " + threadCount);
+        }
+        mThreadCount = threadCount;
+        mChoreographer = Choreographer.getInstance();
+    }
+
+    public void submit(Task<?> task, int priority) {
+        startIfNeeded();
+        task.mPriority = priority;
+        task.mSequence = mSequence.getAndIncrement();
+        task.mCancelled = false;
+        mQueue.offer(task);
+    }
+
+    /**
+     * Moves a queued task to another priority. Has no effect once the task started.
+     */
+    public void setPriority(Task<?> task, int priority) {
+        if (task.mPriority != priority && mQueue.remove(task)) {
+            task.mPriority = priority;
+            mQueue.offer(task);
+        }
+    }
+
+    /**
+     * Removes the task if it is still queued, otherwise asks it to stop. Either way its
+     * result is not delivered.
+     */
+    public void cancel(Task<?> task) {
+        task.mCancelled = true;
+        mQueue.remove(task);
+    }
+
+    private synchronized void startIfNeeded() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        for (int i = 0; i < mThreadCount; i++) {
+            Thread worker = new Thread(mWorker, TAG + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    private void onTaskFinished(Task<?> task) {
+        mFinished.offer(task);
+        if (mDeliveryPosted.compareAndSet(false, true)) {
+            mChoreographer.postFrameCallback(mDeliverCallback);
+        }
+    }
+
+    private final Runnable mWorker = new Runnable() {
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            while (true) {
+                Task<?> task;
+                try {
+                    task = mQueue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (task.mCancelled) {
+                    continue;
+                }
+                task.execute();
+                if (!task.mCancelled) {
+                    onTaskFinished(task);
+                }
+            }
+        }
+    };
+
+    private final Choreographer.FrameCallback mDeliverCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mDeliveryPosted.set(false);
+            Task<?> task;
+            while ((task = mFinished.poll()) != null) {
+                task.deliver();
+            }
+        }
+    };
+
+    /**
+     * Unit of background work with a result delivered on the main thread.
+     */
+    public abstract static class Task<T> implements Comparable<Task<?>> {
+        volatile boolean mCancelled;
+        int mPriority;
+        long mSequence;
+        private T mResult;
+
+        /**
+         * Runs on a worker thread. If it throws, or runs out of memory, the task is delivered
+         * with a null result and the worker goes on with the next task.
+         */
+        protected abstract T doInBackground();
+
+        /**
+         * Runs on the main thread, unless the task was cancelled.
+         */
+        protected abstract void onResult(T result);
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        public int getPriority() {
+            return mPriority;
+        }
+
+        final void execute() {
+            try {
+                mResult = doInBackground();
+            } catch (Exception | OutOfMemoryError e) {
+                // e.g. a decode of a broken image, the content can be requested again
+                if (DEBUG) {
+                    Log.w(TAG, "task failed", e);
+                }
+                mResult = null;
+            }
+        }
+
+        final void deliver() {
+            T result = mResult;
+            mResult = null;
+            if (!mCancelled) {
+                onResult(result);
+            }
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            if (mPriority != other.mPriority) {
+                return mPriority < other.mPriority ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : mSequence == other.mSequence ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * The disallow intercept flag of a layout that dispatches touches itself instead of through
+ * {@code ViewGroup.dispatchTouchEvent()}.
+ * <p>
+ * {@code ViewGroup} keeps its own copy of the flag, clears it when a gesture starts or ends
+ * in its {@code dispatchTouchEvent()} and ignores requests that do not change it. Without
+ * that dispatch the copy has to be cleared here as well, or it stays set after the first
+ * request and every later request of a child stops before reaching the parents.
+ * <p>
+ * This class has no Android dependencies and is not thread safe.
+ */
+class DisallowInterceptFlag {
+
+    /**
+     * The {@code ViewGroup} implementation, which keeps its own flag and forwards changes to
+     * the parent.
+     */
+    interface Target {
+        void requestDisallowInterceptTouchEvent(boolean disallowIntercept);
+    }
+
+    private final Target mTarget;
+    private boolean mDisallowIntercept = false;
+
+    DisallowInterceptFlag(Target target) {
+        mTarget = target;
+    }
+
+    boolean isSet() {
+        return mDisallowIntercept;
+    }
+
+    void request(boolean disallowIntercept) {
+        mDisallowIntercept = disallowIntercept;
+        mTarget.requestDisallowInterceptTouchEvent(disallowIntercept);
+    }
+
+    /**
+     * Clears the flag when a gesture starts or ends.
+     */
+    void reset() {
+        if (mDisallowIntercept) {
+            mDisallowIntercept = false;
+            mTarget.requestDisallowInterceptTouchEvent(false);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * Two dimensional fling with exponential (friction) decay and an optional critically damped
+ * spring back into the rest bounds, similar to {@code OverScroller}.
+ * <p>
+ * Both axes decay together along the release velocity and stop at the same time. Time is
+ * passed in by the caller, normally once per frame from {@code computeScroll()}, which keeps
+ * the physics deterministic and testable on the JVM.
+ */
+public class FlingScroller {
+    /**
+     * Velocity kept per millisecond, the default matches a natural list fling.
+     */
+    public static final float DECELERATION_RATE_NORMAL = 0.998f;
+    private static final float MIN_VELOCITY = 0.02f;
+    private static final float SPRING_ANGULAR_FREQUENCY = 0.02f;
+    private static final float SPRING_REST_DISTANCE = 0.5f;
+    private static final float SPRING_REST_VELOCITY = 0.01f;
+    private static final long MAX_SPRING_DURATION = 800;
+
+    private final Axis mX = new Axis();
+    private final Axis mY = new Axis();
+    private float mTimeConstant;
+    private long mStartTime;
+    private long mDuration;
+
+    public FlingScroller() {
+        setDecelerationRate(DECELERATION_RATE_NORMAL);
+    }
+
+    /**
+     * @param rate fraction of the velocity kept after one millisecond, in (0, 1)
+     */
+    public void setDecelerationRate(float rate) {
+        if (rate <= 0 || rate >= 1) {
+            throw new IllegalArgumentException("deceleration rate must be in (0, 1): " + rate);
+        }
+        mTimeConstant = (float) (-1 / Math.log(rate));
+    }
+
+    /**
+     * Starts a fling. Positions outside {@code [min, max]} but inside the overscroll distance
+     * spring back to the nearest bound; with an overscroll of 0 the fling stops at the bound.
+     *
+     * @param velocityX  pixels per second
+     * @param velocityY  pixels per second
+     * @param overscroll how far the fling may overshoot a bound before springing back
+     */
+    public void fling(long time, float startX, float startY, float velocityX, float velocityY,
+                      float minX, float maxX, float minY, float maxY, float overscroll) {
+        float vx = velocityX / 1000;
+        float vy = velocityY / 1000;
+        float speed = (float) Math.sqrt(vx * vx + vy * vy);
+        mStartTime = time;
+        mDuration = speed > MIN_VELOCITY ? (long) (mTimeConstant * Math.log(speed / MIN_VELOCITY)) : 0;
+        mX.start(time, startX, vx, minX, maxX, overscroll);
+        mY.start(time, startY, vy, minY, maxY, overscroll);
+    }
+
+    /**
+     * Springs back into {@code [min, max]} without flinging.
+     *
+     * @return true if a spring back was started
+     */
+    public boolean springBack(long time, float startX, float startY, float minX, float maxX, float minY, float maxY) {
+        fling(time, startX, startY, 0, 0, minX, maxX, minY, maxY, Float.MAX_VALUE);
+        return !isFinished();
+    }
+
+    /**
+     * Advances the fling to {@code time}.
+     *
+     * @return true if the fling was still running, in which case the new position is available
+     * from {@link #getCurrX()} and {@link #getCurrY()}
+     */
+    public boolean computeScrollOffset(long time) {
+        if (isFinished()) {
+            return false;
+        }
+        long elapsed = Math.min(time - mStartTime, mDuration);
+        float decay = (float) Math.exp(-elapsed / mTimeConstant);
+        mX.update(time, elapsed >= mDuration, decay, mTimeConstant);
+        mY.update(time, elapsed >= mDuration, decay, mTimeConstant);
+        return true;
+    }
+
+    public void abortAnimation() {
+        mX.mState = Axis.FINISHED;
+        mY.mState = Axis.FINISHED;
+    }
+
+    public boolean isFinished() {
+        return mX.mState == Axis.FINISHED && mY.mState == Axis.FINISHED;
+    }
+
+    public float getCurrX() {
+        return mX.mCurr;
+    }
+
+    public float getCurrY() {
+        return mY.mCurr;
+    }
+
+    /**
+     * Where the fling will come to rest, before it actually gets there.
+     */
+    public float getFinalX() {
+        return mX.finalPosition(mDuration, mTimeConstant);
+    }
+
+    public float getFinalY() {
+        return mY.finalPosition(mDuration, mTimeConstant);
+    }
+
+    private static final class Axis {
+        static final int FINISHED = 0;
+        static final int DECAY = 1;
+        static final int SPRING = 2;
+
+        int mState = FINISHED;
+        float mStart;
+        float mVelocity;
+        float mMin;
+        float mMax;
+        float mOverscroll;
+        float mCurr;
+        long mSpringStartTime;
+        float mSpringTarget;
+        float mSpringA;
+        float mSpringB;
+
+        void start(long time, float start, float velocity, float min, float max, float overscroll) {
+            mStart = start;
+            mVelocity = velocity;
+            mMin = min;
+            mMax = max;
+            mOverscroll = overscroll;
+            mCurr = start;
+            if (start < min || start > max) {
+                startSpring(time, start, velocity);
+            } else {
+                mState = velocity != 0 ? DECAY : FINISHED;
+            }
+        }
+
+        void update(long time, boolean decayFinished, float decay, float timeConstant) {
+            if (mState == DECAY) {
+                mCurr = mStart + mVelocity * timeConstant * (1 - decay);
+                if (mCurr < mMin || mCurr > mMax) {
+                    if (mOverscroll > 0) {
+                        startSpring(time, mCurr, mVelocity * decay);
+                        updateSpring(time);
+                    } else {
+                        mCurr = mCurr < mMin ? mMin : mMax;
+                        mState = FINISHED;
+                    }
+                } else if (decayFinished) {
+                    mState = FINISHED;
+                }
+            } else if (mState == SPRING) {
+                updateSpring(time);
+            }
+        }
+
+        private void startSpring(long time, float position, float velocity) {
+            mState = SPRING;
+            mSpringStartTime = time;
+            mSpringTarget = position < mMin ? mMin : position > mMax ? mMax : position;
+            mSpringA = position - mSpringTarget;
+            mSpringB = velocity + SPRING_ANGULAR_FREQUENCY * mSpringA;
+        }
+
+        private void updateSpring(long time) {
+            long t = time - mSpringStartTime;
+            float decay = (float) Math.exp(-SPRING_ANGULAR_FREQUENCY * t);
+            float offset = (mSpringA + mSpringB * t) * decay;
+            float velocity = (mSpringB - SPRING_ANGULAR_FREQUENCY * (mSpringA + mSpringB * t)) * decay;
+            if (offset > mOverscroll) {
+                offset = mOverscroll;
+            } else if (offset < -mOverscroll) {
+                offset = -mOverscroll;
+            }
+            mCurr = mSpringTarget + offset;
+            if (t >= MAX_SPRING_DURATION
+                    || (Math.abs(offset) < SPRING_REST_DISTANCE && Math.abs(velocity) < SPRING_REST_VELOCITY)) {
+                mCurr = mSpringTarget;
+                mState = FINISHED;
+            }
+        }
+
+        float finalPosition(long duration, float timeConstant) {
+            if (mState == FINISHED) {
+                return mCurr;
+            }
+            if (mState == SPRING) {
+                return mSpringTarget;
+            }
+            float end = mStart + mVelocity * timeConstant * (1 - (float) Math.exp(-duration / timeConstant));
+            return end < mMin ? mMin : end > mMax ? mMax : end;
+        }
+    }
+}
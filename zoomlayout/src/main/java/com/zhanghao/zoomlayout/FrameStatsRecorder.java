@@ -0,0 +1,142 @@
+package com.zhanghao.zoomlayout;
+
+import java.util.Arrays;
+
+/**
+ * Collects frame intervals and input latency of a gesture into a fixed histogram, so it can
+ * stay enabled in production without allocating per frame.
+ * <p>
+ * Times are {@code System.nanoTime()} based, like {@code Choreographer} frame times and
+ * {@code MotionEvent} event times (converted to nanoseconds).
+ */
+class FrameStatsRecorder {
+    static final long DEFAULT_FRAME_INTERVAL_NANOS = 16666667;
+    private static final long NANOS_PER_MS = 1000000;
+    private static final long BUCKET_NANOS = NANOS_PER_MS / 2;
+    private static final int BUCKET_COUNT = 256;
+
+    private final int[] mHistogram = new int[BUCKET_COUNT];
+    private long mFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+    private int mGesture = GestureFrameStats.GESTURE_NONE;
+    private long mStartNanos;
+    private long mLastFrameNanos;
+    private int mFrameCount;
+    private int mDroppedFrames;
+    private long mMaxFrameNanos;
+    private long mPendingInputNanos = -1;
+    private int mInputCount;
+    private int mLatencyCount;
+    private long mLatencySumNanos;
+    private long mMaxLatencyNanos;
+
+    void setFrameIntervalNanos(long frameIntervalNanos) {
+        mFrameIntervalNanos = frameIntervalNanos;
+    }
+
+    boolean isActive() {
+        return mGesture != GestureFrameStats.GESTURE_NONE;
+    }
+
+    int getGesture() {
+        return mGesture;
+    }
+
+    void begin(int gesture, long nowNanos) {
+        Arrays.fill(mHistogram, 0);
+        mGesture = gesture;
+        mStartNanos = nowNanos;
+        mLastFrameNanos = -1;
+        mFrameCount = 0;
+        mDroppedFrames = 0;
+        mMaxFrameNanos = 0;
+        mPendingInputNanos = -1;
+        mInputCount = 0;
+        mLatencyCount = 0;
+        mLatencySumNanos = 0;
+        mMaxLatencyNanos = 0;
+    }
+
+    void onFrame(long frameTimeNanos) {
+        if (!isActive()) {
+            return;
+        }
+        mFrameCount++;
+        if (mLastFrameNanos >= 0) {
+            long interval = frameTimeNanos - mLastFrameNanos;
+            int bucket = (int) Math.min(interval / BUCKET_NANOS, BUCKET_COUNT - 1);
+            mHistogram[bucket]++;
+            mMaxFrameNanos = Math.max(mMaxFrameNanos, interval);
+            long missed = (interval + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1;
+            if (missed > 0) {
+                mDroppedFrames += missed;
+            }
+        }
+        mLastFrameNanos = frameTimeNanos;
+    }
+
+    void onInput(long eventTimeNanos) {
+        if (!isActive()) {
+            return;
+        }
+        mInputCount++;
+        if (mPendingInputNanos < 0) {
+            mPendingInputNanos = eventTimeNanos;
+        }
+    }
+
+    /**
+     * Called when the input received so far has been applied to the child.
+     */
+    void onTransformApplied(long nowNanos) {
+        if (mPendingInputNanos < 0) {
+            return;
+        }
+        long latency = nowNanos - mPendingInputNanos;
+        mPendingInputNanos = -1;
+        mLatencyCount++;
+        mLatencySumNanos += latency;
+        mMaxLatencyNanos = Math.max(mMaxLatencyNanos, latency);
+    }
+
+    void end(long nowNanos, GestureFrameStats out) {
+        out.mGesture = mGesture;
+        out.mDurationNanos = nowNanos - mStartNanos;
+        out.mFrameCount = mFrameCount;
+        out.mDroppedFrames = mDroppedFrames;
+        out.mFrameIntervalNanos = mFrameIntervalNanos;
+        out.mFrameDuration50 = percentile(50);
+        out.mFrameDuration90 = percentile(90);
+        out.mFrameDuration99 = percentile(99);
+        out.mMaxFrameDuration = toMillis(mMaxFrameNanos);
+        out.mInputCount = mInputCount;
+        out.mAverageInputLatency = mLatencyCount == 0 ? 0 : toMillis(mLatencySumNanos / mLatencyCount);
+        out.mMaxInputLatency = toMillis(mMaxLatencyNanos);
+        mGesture = GestureFrameStats.GESTURE_NONE;
+    }
+
+    /**
+     * Upper bound of the histogram bucket containing the percentile, in milliseconds.
+     */
+    private float percentile(int percentile) {
+        int total = 0;
+        for (int count : mHistogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        int threshold = (total * percentile + 99) / 100;
+        int seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += mHistogram[i];
+            if (seen >= threshold) {
+                return toMillis((i + 1) * BUCKET_NANOS);
+            }
+        }
+        return toMillis(mMaxFrameNanos);
+    }
+
+    private static float toMillis(long nanos) {
+        return (float) nanos / NANOS_PER_MS;
+    }
+}
@@ -0,0 +1,299 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * The pan, pinch, fling and double tap rules of {@link ZoomLayout}, applied to its
+ * {@link ViewportTransform} and {@link FlingScroller}.
+ * <p>
+ * The layout feeds it touch positions, the scale factors of its {@code ScaleGestureDetector}
+ * and the release velocity of its {@code VelocityTracker}, and takes care of everything
+ * around the transform (frames, nested scrolling, prefetching). Gesture traces are replayed
+ * through the same rules without a device.
+ * <p>
+ * This class has no Android dependencies and is not thread safe.
+ */
+class GestureCore {
+    static final float MIN_SCALE = 0.5f;
+    static final float MAX_SCALE = 4f;
+    static final float DOUBLE_TAP_SCALE_INCREASE = 0.5f;
+    static final float MIN_FLING_VELOCITY = 10f;
+
+    /**
+     * {@link #release} left the content where it is.
+     */
+    static final int RELEASE_NONE = 0;
+    static final int RELEASE_FLING = 1;
+    static final int RELEASE_SPRING_BACK = 2;
+
+    private final FlingScroller mScroller;
+    private ViewportTransform mTransform;
+    private float mTouchSlop;
+    private float mMaxFlingVelocity = Float.MAX_VALUE;
+    private boolean mFlingSpringBackEnabled = false;
+    private float mDownX;
+    private float mDownY;
+    private float mLastX;
+    private float mLastY;
+    private boolean mIsDragging = false;
+    private boolean mIsScaling = false;
+    private float mScaleAnimFrom;
+    private float mScaleAnimTo;
+    private float mScaleAnimFocusX;
+    private float mScaleAnimFocusY;
+
+    GestureCore(ViewportTransform transform, FlingScroller scroller) {
+        mTransform = transform;
+        mScroller = scroller;
+    }
+
+    ViewportTransform getTransform() {
+        return mTransform;
+    }
+
+    void setTransform(ViewportTransform transform) {
+        mTransform = transform;
+    }
+
+    FlingScroller getScroller() {
+        return mScroller;
+    }
+
+    float getTouchSlop() {
+        return mTouchSlop;
+    }
+
+    /**
+     * Sets how far a finger has to move before the drag starts.
+     */
+    void setTouchSlop(float touchSlop) {
+        mTouchSlop = touchSlop;
+    }
+
+    float getMaxFlingVelocity() {
+        return mMaxFlingVelocity;
+    }
+
+    void setMaxFlingVelocity(float maxFlingVelocity) {
+        mMaxFlingVelocity = maxFlingVelocity;
+    }
+
+    boolean isFlingSpringBackEnabled() {
+        return mFlingSpringBackEnabled;
+    }
+
+    /**
+     * See {@link ZoomLayout#setFlingSpringBackEnabled(boolean)}.
+     */
+    void setFlingSpringBackEnabled(boolean enabled) {
+        mFlingSpringBackEnabled = enabled;
+    }
+
+    /**
+     * Starts a gesture with the first finger at {@code (x, y)}.
+     */
+    void down(float x, float y) {
+        mDownX = x;
+        mDownY = y;
+        mLastX = x;
+        mLastY = y;
+        mIsDragging = false;
+        mIsScaling = false;
+    }
+
+    float getDownX() {
+        return mDownX;
+    }
+
+    float getDownY() {
+        return mDownY;
+    }
+
+    /**
+     * Where the previous move left the first finger, the next pan is measured from there.
+     */
+    float getLastX() {
+        return mLastX;
+    }
+
+    float getLastY() {
+        return mLastY;
+    }
+
+    void setLastPosition(float x, float y) {
+        mLastX = x;
+        mLastY = y;
+    }
+
+    boolean isPastTouchSlop(float x, float y) {
+        return Math.abs(x - mDownX) > mTouchSlop || Math.abs(y - mDownY) > mTouchSlop;
+    }
+
+    /**
+     * True if a move to {@code (x, y)} starts the drag. The slop is only applied once, the
+     * content follows the finger from then on.
+     */
+    boolean shouldStartDrag(float x, float y) {
+        return !mIsDragging && isPastTouchSlop(x, y);
+    }
+
+    void startDrag() {
+        mIsDragging = true;
+    }
+
+    boolean isDragging() {
+        return mIsDragging;
+    }
+
+    /**
+     * True if finger movement pans the content, i.e. it is neither pinched nor flung.
+     */
+    boolean canPan() {
+        return !mIsScaling && mScroller.isFinished();
+    }
+
+    /**
+     * @return true if the transform changed
+     */
+    boolean pan(float dx, float dy) {
+        return canPan() && mTransform.translateBy(dx, dy);
+    }
+
+    void beginScale() {
+        mIsScaling = true;
+    }
+
+    boolean isScaling() {
+        return mIsScaling;
+    }
+
+    /**
+     * @return true if the transform changed
+     */
+    boolean scale(float factor, float focusX, float focusY) {
+        return mTransform.scaleBy(factor, focusX, focusY);
+    }
+
+    /**
+     * Ends a gesture that was taken away, the content stays where it is.
+     */
+    void cancel() {
+        mIsScaling = false;
+    }
+
+    /**
+     * True if releasing with the content velocity {@code (velocityX, velocityY)} flings.
+     */
+    boolean isFling(float velocityX, float velocityY) {
+        return !mIsScaling && mIsDragging
+                && (Math.abs(velocityX) >= MIN_FLING_VELOCITY || Math.abs(velocityY) >= MIN_FLING_VELOCITY);
+    }
+
+    float clampVelocity(float velocity) {
+        return GestureMath.clampVelocity(velocity, mMaxFlingVelocity);
+    }
+
+    /**
+     * Ends a gesture. A drag released fast enough flings, anything else springs back if it
+     * was left outside the rest bounds.
+     *
+     * @param velocityX pixels per second
+     * @return one of {@link #RELEASE_NONE}, {@link #RELEASE_FLING}, {@link #RELEASE_SPRING_BACK}
+     */
+    int release(long time, float velocityX, float velocityY) {
+        if (!isFling(velocityX, velocityY)) {
+            mIsScaling = false;
+            return springBack(time) ? RELEASE_SPRING_BACK : RELEASE_NONE;
+        }
+        fling(time, clampVelocity(velocityX), clampVelocity(velocityY));
+        return RELEASE_FLING;
+    }
+
+    private void fling(long time, float velocityX, float velocityY) {
+        ViewportTransform t = mTransform;
+        if (mFlingSpringBackEnabled) {
+            mScroller.fling(time, t.getTranslationX(), t.getTranslationY(), velocityX, velocityY,
+                    t.getRestMinTranslationX(), t.getRestMaxTranslationX(),
+                    t.getRestMinTranslationY(), t.getRestMaxTranslationY(), t.getBoundSlop());
+        } else {
+            mScroller.fling(time, t.getTranslationX(), t.getTranslationY(), velocityX, velocityY,
+                    t.getMinTranslationX(), t.getMaxTranslationX(),
+                    t.getMinTranslationY(), t.getMaxTranslationY(), 0);
+        }
+    }
+
+    /**
+     * Flings within the rest bounds, for flings handed over by a nested scrolling child.
+     */
+    void flingWithinRestBounds(long time, float velocityX, float velocityY) {
+        ViewportTransform t = mTransform;
+        mScroller.fling(time, t.getTranslationX(), t.getTranslationY(), velocityX, velocityY,
+                t.getRestMinTranslationX(), t.getRestMaxTranslationX(),
+                t.getRestMinTranslationY(), t.getRestMaxTranslationY(), 0);
+    }
+
+    /**
+     * Moves content left inside the scroll edge back to the rest bounds, if spring back is
+     * enabled.
+     *
+     * @return true if a spring back started
+     */
+    boolean springBack(long time) {
+        if (!mFlingSpringBackEnabled) {
+            return false;
+        }
+        ViewportTransform t = mTransform;
+        return mScroller.springBack(time, t.getTranslationX(), t.getTranslationY(),
+                t.getRestMinTranslationX(), t.getRestMaxTranslationX(),
+                t.getRestMinTranslationY(), t.getRestMaxTranslationY());
+    }
+
+    /**
+     * @return true if a fling was running
+     */
+    boolean stopFling() {
+        if (mScroller.isFinished()) {
+            return false;
+        }
+        mScroller.abortAnimation();
+        return true;
+    }
+
+    /**
+     * Moves the content to where the fling is at {@code time}.
+     *
+     * @return false if no fling is running
+     */
+    boolean computeFling(long time) {
+        if (!mScroller.computeScrollOffset(time)) {
+            return false;
+        }
+        mTransform.setTranslation(mScroller.getCurrX(), mScroller.getCurrY());
+        return true;
+    }
+
+    /**
+     * Prepares the double tap zoom around {@code (focusX, focusY)}, see {@link #animateScale}.
+     *
+     * @return false if the content is already at the maximum scale
+     */
+    boolean startScaleAnimation(float focusX, float focusY) {
+        float originScale = mTransform.getScale();
+        float targetScale = mTransform.clampScale(originScale + DOUBLE_TAP_SCALE_INCREASE);
+        if (targetScale == originScale) {
+            return false;
+        }
+        mScaleAnimFrom = originScale;
+        mScaleAnimTo = targetScale;
+        mScaleAnimFocusX = focusX;
+        mScaleAnimFocusY = focusY;
+        return true;
+    }
+
+    /**
+     * @param fraction progress of the double tap zoom, from 0 to 1
+     * @return true if the transform changed
+     */
+    boolean animateScale(float fraction) {
+        float scale = mScaleAnimFrom + (mScaleAnimTo - mScaleAnimFrom) * fraction;
+        return mTransform.setScale(scale, mScaleAnimFocusX, mScaleAnimFocusY);
+    }
+}
@@ -0,0 +1,91 @@
+package com.zhanghao.zoomlayout;
+
+import android.view.Choreographer;
+
+/**
+ * Follows the frames of the gesture in progress with {@link Choreographer} callbacks and
+ * reports a {@link GestureFrameStats} when it ends. Does nothing while no listener is set.
+ */
+class GestureFrameMonitor implements Choreographer.FrameCallback {
+    private static final long NANOS_PER_MS = 1000000;
+    private static final long NANOS_PER_SECOND = 1000000000;
+
+    private final FrameStatsRecorder mRecorder = new FrameStatsRecorder();
+    private final GestureFrameStats mStats = new GestureFrameStats();
+    private ZoomLayout.OnGestureFrameStatsListener mListener;
+    private boolean mFrameCallbackPosted;
+
+    void setListener(ZoomLayout.OnGestureFrameStatsListener listener) {
+        mListener = listener;
+        if (listener == null) {
+            cancel();
+        }
+    }
+
+    void setRefreshRate(float refreshRate) {
+        if (refreshRate > 0) {
+            mRecorder.setFrameIntervalNanos((long) (NANOS_PER_SECOND / refreshRate));
+        }
+    }
+
+    void begin(int gesture) {
+        if (mListener == null) {
+            return;
+        }
+        if (mRecorder.isActive()) {
+            finish();
+        }
+        mRecorder.begin(gesture, System.nanoTime());
+        if (!mFrameCallbackPosted) {
+            mFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    void end(int gesture) {
+        if (mRecorder.isActive() && mRecorder.getGesture() == gesture) {
+            finish();
+        }
+    }
+
+    /**
+     * @param eventTime {@code MotionEvent} event time, in milliseconds
+     */
+    void onInput(long eventTime) {
+        mRecorder.onInput(eventTime * NANOS_PER_MS);
+    }
+
+    void onTransformApplied() {
+        if (mRecorder.isActive()) {
+            mRecorder.onTransformApplied(System.nanoTime());
+        }
+    }
+
+    void cancel() {
+        if (mFrameCallbackPosted) {
+            mFrameCallbackPosted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+        if (mRecorder.isActive()) {
+            mRecorder.end(System.nanoTime(), mStats);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameCallbackPosted = false;
+        if (!mRecorder.isActive()) {
+            return;
+        }
+        mRecorder.onFrame(frameTimeNanos);
+        mFrameCallbackPosted = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void finish() {
+        mRecorder.end(System.nanoTime(), mStats);
+        if (mListener != null) {
+            mListener.onGestureFrameStats(mStats);
+        }
+    }
+}
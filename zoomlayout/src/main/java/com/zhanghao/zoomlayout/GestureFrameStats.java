@@ -0,0 +1,110 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * Frame timing of one zoom / pan gesture, reported by
+ * {@link ZoomLayout.OnGestureFrameStatsListener}.
+ * <p>
+ * Instances are reused between gestures, copy the values you need to keep.
+ */
+public class GestureFrameStats {
+    public static final int GESTURE_NONE = 0;
+    public static final int GESTURE_PAN = 1;
+    public static final int GESTURE_PINCH = 2;
+    public static final int GESTURE_FLING = 3;
+    public static final int GESTURE_DOUBLE_TAP = 4;
+
+    int mGesture;
+    long mDurationNanos;
+    int mFrameCount;
+    int mDroppedFrames;
+    long mFrameIntervalNanos;
+    float mFrameDuration50;
+    float mFrameDuration90;
+    float mFrameDuration99;
+    float mMaxFrameDuration;
+    int mInputCount;
+    float mAverageInputLatency;
+    float mMaxInputLatency;
+
+    /**
+     * One of {@link #GESTURE_PAN}, {@link #GESTURE_PINCH}, {@link #GESTURE_FLING} or
+     * {@link #GESTURE_DOUBLE_TAP}.
+     */
+    public int getGesture() {
+        return mGesture;
+    }
+
+    public long getDurationNanos() {
+        return mDurationNanos;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Frames the display showed without a new frame from this gesture.
+     */
+    public int getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    /**
+     * Expected frame interval of the display.
+     */
+    public long getFrameIntervalNanos() {
+        return mFrameIntervalNanos;
+    }
+
+    /**
+     * Frame duration percentile in milliseconds, {@code percentile} is one of 50, 90 or 99.
+     */
+    public float getFrameDurationPercentile(int percentile) {
+        switch (percentile) {
+            case 50:
+                return mFrameDuration50;
+            case 90:
+                return mFrameDuration90;
+            case 99:
+                return mFrameDuration99;
+            default:
+                throw new IllegalArgumentException("unsupported percentile " + percentile);
+        }
+    }
+
+    public float getMaxFrameDuration() {
+        return mMaxFrameDuration;
+    }
+
+    /**
+     * Number of touch events that changed the transform during the gesture.
+     */
+    public int getInputCount() {
+        return mInputCount;
+    }
+
+    /**
+     * Average time in milliseconds from a touch event to the frame that applied it.
+     */
+    public float getAverageInputLatency() {
+        return mAverageInputLatency;
+    }
+
+    public float getMaxInputLatency() {
+        return mMaxInputLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "GestureFrameStats{gesture=" + mGesture
+                + ", frames=" + mFrameCount
+                + ", dropped=" + mDroppedFrames
+                + ", p50=" + mFrameDuration50
+                + ", p90=" + mFrameDuration90
+                + ", p99=" + mFrameDuration99
+                + ", max=" + mMaxFrameDuration
+                + ", inputLatency=" + mAverageInputLatency
+                + ", maxInputLatency=" + mMaxInputLatency
+                + '}';
+    }
+}
@@ -0,0 +1,44 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * Framework-free math used per touch event by {@link ZoomLayout}.
+ */
+public final class GestureMath {
+
+    private GestureMath() {
+    }
+
+    public static float distance(float x1, float y1, float x2, float y2) {
+        float dx = x1 - x2;
+        float dy = y1 - y2;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Clamps the magnitude of a velocity to {@code max}, keeping its sign.
+     */
+    public static float clampVelocity(float velocity, float max) {
+        if (velocity > max) {
+            return max;
+        }
+        if (velocity < -max) {
+            return -max;
+        }
+        return velocity;
+    }
+
+    /**
+     * Returns the part of {@code delta} that can be added to {@code value} without leaving
+     * {@code [min, max]}. A value already outside the range may move back towards it but not
+     * further away.
+     */
+    public static float consumeWithin(float value, float delta, float min, float max) {
+        float target = value + delta;
+        if (delta < 0) {
+            target = Math.max(target, Math.min(value, min));
+        } else {
+            target = Math.min(target, Math.max(value, max));
+        }
+        return target - value;
+    }
+}
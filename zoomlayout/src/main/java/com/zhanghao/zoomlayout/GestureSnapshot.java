@@ -0,0 +1,112 @@
+package com.zhanghao.zoomlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.view.View;
+
+/**
+ * Freezes the content of the child for the duration of a gesture, so scaling and moving it
+ * costs the same per frame whatever the child draws.
+ * <p>
+ * With hardware acceleration the child is put on a hardware layer. Otherwise it is drawn once
+ * into a bitmap (reused between gestures) that {@link ZoomLayout} draws instead of the child.
+ */
+class GestureSnapshot {
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final int mMaxPixels;
+    private View mView;
+    private int mPreviousLayerType;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private boolean mDrawBitmap;
+
+    /**
+     * @param maxPixels largest child, in pixels, that is captured into a bitmap
+     */
+    GestureSnapshot(int maxPixels) {
+        mMaxPixels = maxPixels;
+    }
+
+    boolean isActive() {
+        return mView != null;
+    }
+
+    void begin(View child, boolean hardwareAccelerated) {
+        if (mView != null || child == null) {
+            return;
+        }
+        if (hardwareAccelerated) {
+            mView = child;
+            mPreviousLayerType = child.getLayerType();
+            if (mPreviousLayerType != View.LAYER_TYPE_HARDWARE) {
+                child.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+            }
+            return;
+        }
+        int width = child.getWidth();
+        int height = child.getHeight();
+        if (width == 0 || height == 0 || (long) width * height > mMaxPixels) {
+            return;
+        }
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+        } else {
+            mBitmap.eraseColor(0);
+        }
+        child.draw(mCanvas);
+        mView = child;
+        mDrawBitmap = true;
+    }
+
+    /**
+     * Draws the snapshot in place of {@code child}.
+     *
+     * @return false if the child has to be drawn normally
+     */
+    boolean draw(Canvas canvas, View child, ViewportTransform transform) {
+        if (!mDrawBitmap || child != mView) {
+            return false;
+        }
+        int saveCount = canvas.save();
+        canvas.translate(transform.getContentLeft() + transform.getTranslationX(),
+                transform.getContentTop() + transform.getTranslationY());
+        canvas.scale(transform.getScale(), transform.getScale());
+        canvas.drawBitmap(mBitmap, 0, 0, mPaint);
+        canvas.restoreToCount(saveCount);
+        return true;
+    }
+
+    /**
+     * Switches back to drawing the live child.
+     */
+    void end() {
+        if (mView == null) {
+            return;
+        }
+        if (mDrawBitmap) {
+            mDrawBitmap = false;
+            mView.invalidate();
+        } else if (mPreviousLayerType != View.LAYER_TYPE_HARDWARE) {
+            mView.setLayerType(mPreviousLayerType, null);
+        }
+        mView = null;
+    }
+
+    /**
+     * Drops the reusable bitmap unless it is shown right now.
+     */
+    void trimMemory() {
+        if (!mDrawBitmap) {
+            mBitmap = null;
+            mCanvas = null;
+        }
+    }
+
+    void release() {
+        end();
+        mBitmap = null;
+        mCanvas = null;
+    }
+}
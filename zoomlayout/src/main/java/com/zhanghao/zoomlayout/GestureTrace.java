@@ -0,0 +1,384 @@
+package com.zhanghao.zoomlayout;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Compact binary recording of the touch events a {@link ZoomLayout} received, together with
+ * the viewport, the transform with its content and scroll bounds and scale range, and the
+ * touch slop, fling velocity limit and spring back setting at the first event, so a gesture
+ * can be replayed through {@link GestureCore} without a device.
+ * <p>
+ * Every event is stored as varints: the time since the previous event in milliseconds, the
+ * masked action packed with the pointer index, the pointer count and, per pointer, its id
+ * and the zigzag encoded movement since the same pointer's previous position in 1/8 px. A
+ * one finger move usually takes 6 to 8 bytes.
+ * <p>
+ * This class has no Android dependencies and is not thread safe.
+ */
+public class GestureTrace {
+    public static final int MAX_POINTERS = 16;
+    private static final int MAGIC = 0x5A4C4754;
+    private static final int VERSION = 2;
+    private static final float POSITION_UNITS_PER_PX = 8;
+    private static final int ACTION_INDEX_SHIFT = 4;
+    private static final int ACTION_MASK = (1 << ACTION_INDEX_SHIFT) - 1;
+
+    private int mViewportWidth;
+    private int mViewportHeight;
+    private float mContentLeft;
+    private float mContentTop;
+    private float mContentWidth;
+    private float mContentHeight;
+    private boolean mHasScrollBounds;
+    private float mScrollLeft;
+    private float mScrollTop;
+    private float mScrollRight;
+    private float mScrollBottom;
+    private float mScrollSlop;
+    private float mMinScale;
+    private float mMaxScale;
+    private float mScale;
+    private float mTranslationX;
+    private float mTranslationY;
+    private float mTouchSlop;
+    private float mMaxFlingVelocity;
+    private boolean mFlingSpringBackEnabled;
+
+    private byte[] mData = new byte[256];
+    private int mSize;
+    private int mEventCount;
+    private long mLastTime;
+    private final int[] mLastX = new int[MAX_POINTERS];
+    private final int[] mLastY = new int[MAX_POINTERS];
+
+    /**
+     * Starts a trace of the gestures {@code gestures} is about to receive.
+     */
+    GestureTrace(int viewportWidth, int viewportHeight, GestureCore gestures) {
+        ViewportTransform transform = gestures.getTransform();
+        mViewportWidth = viewportWidth;
+        mViewportHeight = viewportHeight;
+        mContentLeft = transform.getContentLeft();
+        mContentTop = transform.getContentTop();
+        mContentWidth = transform.getContentWidth();
+        mContentHeight = transform.getContentHeight();
+        mHasScrollBounds = transform.hasScrollBounds();
+        mScrollLeft = transform.getBoundLeft();
+        mScrollTop = transform.getBoundTop();
+        mScrollRight = transform.getBoundRight();
+        mScrollBottom = transform.getBoundBottom();
+        mScrollSlop = transform.getBoundSlop();
+        mMinScale = transform.getMinScale();
+        mMaxScale = transform.getMaxScale();
+        mScale = transform.getScale();
+        mTranslationX = transform.getTranslationX();
+        mTranslationY = transform.getTranslationY();
+        mTouchSlop = gestures.getTouchSlop();
+        mMaxFlingVelocity = gestures.getMaxFlingVelocity();
+        mFlingSpringBackEnabled = gestures.isFlingSpringBackEnabled();
+    }
+
+    private GestureTrace() {
+    }
+
+    /**
+     * Puts {@code gestures} and its transform back into the state of the first event.
+     */
+    void restore(GestureCore gestures) {
+        ViewportTransform transform = gestures.getTransform();
+        transform.setScaleRange(mMinScale, mMaxScale);
+        transform.setContentBounds(mContentLeft, mContentTop, mContentWidth, mContentHeight);
+        if (mHasScrollBounds) {
+            transform.setScrollBounds(mScrollLeft, mScrollTop, mScrollRight, mScrollBottom, mScrollSlop);
+        }
+        transform.set(mScale, mTranslationX, mTranslationY);
+        gestures.setTouchSlop(mTouchSlop);
+        gestures.setMaxFlingVelocity(mMaxFlingVelocity);
+        gestures.setFlingSpringBackEnabled(mFlingSpringBackEnabled);
+        gestures.stopFling();
+    }
+
+    /**
+     * Appends an event. Pointer ids must be below {@link #MAX_POINTERS}.
+     *
+     * @param actionMasked like {@code MotionEvent.getActionMasked()}
+     * @param actionIndex  like {@code MotionEvent.getActionIndex()}
+     */
+    public void add(long eventTime, int actionMasked, int actionIndex, int pointerCount,
+                    int[] pointerIds, float[] xs, float[] ys) {
+        if (pointerCount > MAX_POINTERS) {
+            throw new IllegalArgumentException("too many pointers: " + pointerCount);
+        }
+        writeVarLong(mEventCount == 0 ? eventTime : eventTime - mLastTime);
+        writeVarLong(actionMasked | actionIndex << ACTION_INDEX_SHIFT);
+        writeVarLong(pointerCount);
+        for (int i = 0; i < pointerCount; i++) {
+            int id = pointerIds[i];
+            if (id < 0 || id >= MAX_POINTERS) {
+                throw new IllegalArgumentException("pointer id out of range: " + id);
+            }
+            int x = Math.round(xs[i] * POSITION_UNITS_PER_PX);
+            int y = Math.round(ys[i] * POSITION_UNITS_PER_PX);
+            writeVarLong(id);
+            writeVarLong(zigzag(x - mLastX[id]));
+            writeVarLong(zigzag(y - mLastY[id]));
+            mLastX[id] = x;
+            mLastY[id] = y;
+        }
+        mLastTime = eventTime;
+        mEventCount++;
+    }
+
+    public int getViewportWidth() {
+        return mViewportWidth;
+    }
+
+    public int getViewportHeight() {
+        return mViewportHeight;
+    }
+
+    public float getContentWidth() {
+        return mContentWidth;
+    }
+
+    public float getContentHeight() {
+        return mContentHeight;
+    }
+
+    /**
+     * Scale of the transform when the first event was recorded.
+     */
+    public float getScale() {
+        return mScale;
+    }
+
+    public float getTranslationX() {
+        return mTranslationX;
+    }
+
+    public float getTranslationY() {
+        return mTranslationY;
+    }
+
+    public int getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * Size of the encoded events, without the header.
+     */
+    public int getEventBytes() {
+        return mSize;
+    }
+
+    /**
+     * Returns a new reader positioned before the first event.
+     */
+    public Reader newReader() {
+        return new Reader(this);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(mViewportWidth);
+        data.writeInt(mViewportHeight);
+        data.writeFloat(mContentLeft);
+        data.writeFloat(mContentTop);
+        data.writeFloat(mContentWidth);
+        data.writeFloat(mContentHeight);
+        data.writeBoolean(mHasScrollBounds);
+        data.writeFloat(mScrollLeft);
+        data.writeFloat(mScrollTop);
+        data.writeFloat(mScrollRight);
+        data.writeFloat(mScrollBottom);
+        data.writeFloat(mScrollSlop);
+        data.writeFloat(mMinScale);
+        data.writeFloat(mMaxScale);
+        data.writeFloat(mScale);
+        data.writeFloat(mTranslationX);
+        data.writeFloat(mTranslationY);
+        data.writeFloat(mTouchSlop);
+        data.writeFloat(mMaxFlingVelocity);
+        data.writeBoolean(mFlingSpringBackEnabled);
+        data.writeInt(mEventCount);
+        data.writeInt(mSize);
+        data.write(mData, 0, mSize);
+        data.flush();
+    }
+
+    public static GestureTrace readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("not a gesture trace");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported gesture trace version " + version);
+        }
+        GestureTrace trace = new GestureTrace();
+        trace.mViewportWidth = data.readInt();
+        trace.mViewportHeight = data.readInt();
+        trace.mContentLeft = data.readFloat();
+        trace.mContentTop = data.readFloat();
+        trace.mContentWidth = data.readFloat();
+        trace.mContentHeight = data.readFloat();
+        trace.mHasScrollBounds = data.readBoolean();
+        trace.mScrollLeft = data.readFloat();
+        trace.mScrollTop = data.readFloat();
+        trace.mScrollRight = data.readFloat();
+        trace.mScrollBottom = data.readFloat();
+        trace.mScrollSlop = data.readFloat();
+        trace.mMinScale = data.readFloat();
+        trace.mMaxScale = data.readFloat();
+        trace.mScale = data.readFloat();
+        trace.mTranslationX = data.readFloat();
+        trace.mTranslationY = data.readFloat();
+        trace.mTouchSlop = data.readFloat();
+        trace.mMaxFlingVelocity = data.readFloat();
+        trace.mFlingSpringBackEnabled = data.readBoolean();
+        int eventCount = data.readInt();
+        int size = data.readInt();
+        if (eventCount < 0 || size < 0) {
+            throw new IOException("corrupt gesture trace");
+        }
+        trace.mData = new byte[size];
+        data.readFully(trace.mData);
+        trace.mSize = size;
+        trace.mEventCount = eventCount;
+        // position the writer after the last event, so the trace can be extended
+        Reader reader = trace.newReader();
+        while (reader.next()) {
+            trace.mLastTime = reader.getEventTime();
+        }
+        System.arraycopy(reader.mX, 0, trace.mLastX, 0, MAX_POINTERS);
+        System.arraycopy(reader.mY, 0, trace.mLastY, 0, MAX_POINTERS);
+        return trace;
+    }
+
+    private void writeVarLong(long value) {
+        if (mSize + 10 > mData.length) {
+            mData = Arrays.copyOf(mData, mData.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            mData[mSize++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mData[mSize++] = (byte) value;
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unzigzag(long value) {
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+
+    /**
+     * Walks the events of a trace. Reading does not allocate, the accessors describe the
+     * current event until {@link #next()} is called again.
+     */
+    public static class Reader {
+        private final GestureTrace mTrace;
+        private final int[] mX = new int[MAX_POINTERS];
+        private final int[] mY = new int[MAX_POINTERS];
+        private final int[] mIds = new int[MAX_POINTERS];
+        private int mPosition;
+        private int mIndex;
+        private long mTime;
+        private int mActionMasked;
+        private int mActionIndex;
+        private int mPointerCount;
+
+        Reader(GestureTrace trace) {
+            mTrace = trace;
+        }
+
+        /**
+         * Moves to the next event.
+         *
+         * @return false if there are no more events
+         */
+        public boolean next() {
+            if (mIndex >= mTrace.mEventCount) {
+                return false;
+            }
+            long delta = readVarLong();
+            mTime = mIndex == 0 ? delta : mTime + delta;
+            int action = (int) readVarLong();
+            mActionMasked = action & ACTION_MASK;
+            mActionIndex = action >>> ACTION_INDEX_SHIFT;
+            mPointerCount = (int) readVarLong();
+            for (int i = 0; i < mPointerCount; i++) {
+                int id = (int) readVarLong();
+                mIds[i] = id;
+                mX[id] += unzigzag(readVarLong());
+                mY[id] += unzigzag(readVarLong());
+            }
+            mIndex++;
+            return true;
+        }
+
+        /**
+         * Rewinds to before the first event.
+         */
+        public void reset() {
+            mPosition = 0;
+            mIndex = 0;
+            Arrays.fill(mX, 0);
+            Arrays.fill(mY, 0);
+        }
+
+        public long getEventTime() {
+            return mTime;
+        }
+
+        public int getActionMasked() {
+            return mActionMasked;
+        }
+
+        public int getActionIndex() {
+            return mActionIndex;
+        }
+
+        public int getPointerCount() {
+            return mPointerCount;
+        }
+
+        public int getPointerId(int index) {
+            return mIds[index];
+        }
+
+        public float getX(int index) {
+            return mX[mIds[index]] / POSITION_UNITS_PER_PX;
+        }
+
+        public float getY(int index) {
+            return mY[mIds[index]] / POSITION_UNITS_PER_PX;
+        }
+
+        private long readVarLong() {
+            byte[] data = mTrace.mData;
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                if (mPosition >= mTrace.mSize) {
+                    throw new IllegalStateException("truncated gesture trace");
+                }
+                byte b = data[mPosition++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+    }
+}
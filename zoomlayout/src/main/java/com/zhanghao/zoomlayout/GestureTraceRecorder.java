@@ -0,0 +1,67 @@
+package com.zhanghao.zoomlayout;
+
+import android.view.MotionEvent;
+
+/**
+ * Records the touch events a {@link ZoomLayout} receives into a {@link GestureTrace}, see
+ * {@link ZoomLayout#setGestureTraceRecorder(GestureTraceRecorder)}.
+ * <p>
+ * Batched historical samples are recorded as separate moves with their own times. Recording
+ * stops once {@code maxEvents} events were recorded; the trace holds the viewport, transform
+ * and gesture settings of the first event.
+ */
+public class GestureTraceRecorder {
+    private final int mMaxEvents;
+    private final int[] mIds = new int[GestureTrace.MAX_POINTERS];
+    private final float[] mXs = new float[GestureTrace.MAX_POINTERS];
+    private final float[] mYs = new float[GestureTrace.MAX_POINTERS];
+    private GestureTrace mTrace;
+
+    public GestureTraceRecorder(int maxEvents) {
+        mMaxEvents = maxEvents;
+    }
+
+    /**
+     * Returns what was recorded so far, or null if nothing was.
+     */
+    public GestureTrace getTrace() {
+        return mTrace;
+    }
+
+    /**
+     * Drops the recorded events, the next event starts a new trace.
+     */
+    public void reset() {
+        mTrace = null;
+    }
+
+    void record(MotionEvent ev, int viewportWidth, int viewportHeight, GestureCore gestures) {
+        if (mTrace == null) {
+            mTrace = new GestureTrace(viewportWidth, viewportHeight, gestures);
+        }
+        int pointerCount = Math.min(ev.getPointerCount(), GestureTrace.MAX_POINTERS);
+        for (int i = 0; i < pointerCount; i++) {
+            mIds[i] = Math.min(ev.getPointerId(i), GestureTrace.MAX_POINTERS - 1);
+        }
+        if (ev.getActionMasked() == MotionEvent.ACTION_MOVE) {
+            for (int h = 0, size = ev.getHistorySize(); h < size; h++) {
+                for (int i = 0; i < pointerCount; i++) {
+                    mXs[i] = ev.getHistoricalX(i, h);
+                    mYs[i] = ev.getHistoricalY(i, h);
+                }
+                add(ev.getHistoricalEventTime(h), MotionEvent.ACTION_MOVE, 0, pointerCount);
+            }
+        }
+        for (int i = 0; i < pointerCount; i++) {
+            mXs[i] = ev.getX(i);
+            mYs[i] = ev.getY(i);
+        }
+        add(ev.getEventTime(), ev.getActionMasked(), ev.getActionIndex(), pointerCount);
+    }
+
+    private void add(long eventTime, int actionMasked, int actionIndex, int pointerCount) {
+        if (mTrace.getEventCount() < mMaxEvents) {
+            mTrace.add(eventTime, actionMasked, actionIndex, pointerCount, mIds, mXs, mYs);
+        }
+    }
+}
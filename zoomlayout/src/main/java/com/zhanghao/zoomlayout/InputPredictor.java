@@ -0,0 +1,83 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * Extrapolates where a dragging finger will be a few milliseconds ahead from its recent
+ * samples, to hide part of the touch to display latency.
+ * <p>
+ * The velocity is taken over the recent samples. Nothing is predicted while the finger
+ * slows down sharply, so a stopping drag does not overshoot, and the prediction is limited to
+ * a maximum distance.
+ * <p>
+ * This class has no Android dependencies and is not thread safe.
+ */
+public class InputPredictor {
+    private static final int MAX_SAMPLES = 4;
+    private static final long MAX_SAMPLE_AGE_MS = 50;
+    private static final float MIN_SPEED_RATIO = 0.5f;
+
+    private final long[] mTimes = new long[MAX_SAMPLES];
+    private final float[] mXs = new float[MAX_SAMPLES];
+    private final float[] mYs = new float[MAX_SAMPLES];
+    private int mCount;
+
+    public void reset() {
+        mCount = 0;
+    }
+
+    public void add(long timeMs, float x, float y) {
+        int index = mCount % MAX_SAMPLES;
+        mTimes[index] = timeMs;
+        mXs[index] = x;
+        mYs[index] = y;
+        mCount++;
+    }
+
+    /**
+     * Writes the position predicted {@code lookaheadMs} after the last sample to
+     * {@code out[0]}, {@code out[1]}.
+     *
+     * @param maxDistance the furthest the prediction may be from the last sample
+     * @return false if there is no prediction, {@code out} then holds the last sample
+     */
+    public boolean predict(long lookaheadMs, float maxDistance, float[] out) {
+        if (mCount == 0) {
+            return false;
+        }
+        int last = (mCount - 1) % MAX_SAMPLES;
+        out[0] = mXs[last];
+        out[1] = mYs[last];
+        int oldest = -1;
+        for (int i = mCount - 2; i >= 0 && i >= mCount - MAX_SAMPLES; i--) {
+            int index = i % MAX_SAMPLES;
+            if (mTimes[last] - mTimes[index] > MAX_SAMPLE_AGE_MS) {
+                break;
+            }
+            oldest = index;
+        }
+        if (oldest < 0 || mTimes[last] == mTimes[oldest]) {
+            return false;
+        }
+        float dt = mTimes[last] - mTimes[oldest];
+        float vx = (mXs[last] - mXs[oldest]) / dt;
+        float vy = (mYs[last] - mYs[oldest]) / dt;
+        int previous = (mCount - 2) % MAX_SAMPLES;
+        float recentDt = mTimes[last] - mTimes[previous];
+        if (recentDt > 0) {
+            float recentSpeed = GestureMath.distance(mXs[last], mYs[last], mXs[previous], mYs[previous]) / recentDt;
+            if (recentSpeed < GestureMath.distance(0, 0, vx, vy) * MIN_SPEED_RATIO) {
+                // decelerating, the finger is about to stop
+                return false;
+            }
+        }
+        float dx = vx * lookaheadMs;
+        float dy = vy * lookaheadMs;
+        float distance = GestureMath.distance(0, 0, dx, dy);
+        if (distance > maxDistance) {
+            dx *= maxDistance / distance;
+            dy *= maxDistance / distance;
+        }
+        out[0] += dx;
+        out[1] += dy;
+        return true;
+    }
+}
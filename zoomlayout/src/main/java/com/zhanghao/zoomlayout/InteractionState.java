@@ -0,0 +1,86 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * What the content of a {@link ZoomLayout} is doing, see
+ * {@link ZoomLayout#getInteractionState()}.
+ * <p>
+ * The state is derived from the gesture and animation flags after each of them changes, so
+ * the transitions into and out of {@link #IDLE} are the single place where resources for
+ * moving content are acquired and released.
+ * <p>
+ * This class has no Android dependencies and is not thread safe.
+ */
+public class InteractionState {
+    public static final int IDLE = 0;
+    public static final int DRAGGING = 1;
+    public static final int SCALING = 2;
+    public static final int FLINGING = 3;
+    public static final int ANIMATING = 4;
+
+    private int mState = IDLE;
+    private long mSince;
+
+    /**
+     * The state for the given flags. A pinch wins over a drag, and touch input over the
+     * fling or animation it is about to stop.
+     */
+    public static int derive(boolean scaling, boolean dragging, boolean flinging, boolean animating) {
+        if (scaling) {
+            return SCALING;
+        }
+        if (dragging) {
+            return DRAGGING;
+        }
+        if (flinging) {
+            return FLINGING;
+        }
+        if (animating) {
+            return ANIMATING;
+        }
+        return IDLE;
+    }
+
+    public int get() {
+        return mState;
+    }
+
+    public boolean isIdle() {
+        return mState == IDLE;
+    }
+
+    /**
+     * Time of the last state change, in the time base passed to {@link #moveTo(int, long)}.
+     */
+    public long getSince() {
+        return mSince;
+    }
+
+    /**
+     * @return true if the state changed
+     */
+    public boolean moveTo(int state, long now) {
+        if (state == mState) {
+            return false;
+        }
+        mState = state;
+        mSince = now;
+        return true;
+    }
+
+    public static String toString(int state) {
+        switch (state) {
+            case IDLE:
+                return "IDLE";
+            case DRAGGING:
+                return "DRAGGING";
+            case SCALING:
+                return "SCALING";
+            case FLINGING:
+                return "FLINGING";
+            case ANIMATING:
+                return "ANIMATING";
+            default:
+                return "UNKNOWN(" + state + ")";
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.zhanghao.zoomlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.View;
+
+/**
+ * Rasterizes a {@link ChildPicture} recording on a {@link DecodeScheduler} in two levels of
+ * detail: the whole child at a low resolution, shown while the content moves, and the
+ * visible part at the settled scale, swapped in once it is ready.
+ */
+class LevelOfDetailRenderer {
+    private final View mHost;
+    private final DecodeScheduler mScheduler;
+    private final BitmapPool mPool;
+    private final int mMaxBasePixels;
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final float[] mPoints = new float[4];
+    private final RectF mVisible = new RectF();
+    private final Rect mSrcRect = new Rect();
+
+    private Picture mPicture;
+    private int mWidth;
+    private int mHeight;
+    private Bitmap mBase;
+    private RasterTask mBaseTask;
+    private Bitmap mSharp;
+    private final RectF mSharpRegion = new RectF();
+    private float mSharpScale;
+    private RasterTask mSharpTask;
+
+    /**
+     * @param host          invalidated when a raster is ready
+     * @param maxBasePixels pixel budget of the low resolution raster
+     */
+    LevelOfDetailRenderer(View host, DecodeScheduler scheduler, BitmapPool pool, int maxBasePixels) {
+        mHost = host;
+        mScheduler = scheduler;
+        mPool = pool;
+        mMaxBasePixels = maxBasePixels;
+    }
+
+    /**
+     * Sets the recording to rasterize. Rasters of a previous recording are dropped.
+     */
+    void setPicture(Picture picture, int width, int height) {
+        if (picture == mPicture) {
+            return;
+        }
+        release();
+        mPicture = picture;
+        mWidth = width;
+        mHeight = height;
+        float baseScale = Math.min(1, (float) Math.sqrt((double) mMaxBasePixels / ((long) width * height)));
+        mBaseTask = new RasterTask(picture, 0, 0, width, height, baseScale, false);
+        mScheduler.submit(mBaseTask, DecodeScheduler.PRIORITY_VISIBLE);
+    }
+
+    /**
+     * Draws the best raster available for the transform, and requests a sharp one for the
+     * visible part if the content is settled.
+     *
+     * @return false if nothing is rasterized yet and the recording has to be replayed
+     */
+    boolean draw(Canvas canvas, ViewportTransform transform, int viewportWidth, int viewportHeight,
+                 boolean settled) {
+        if (mPicture == null) {
+            return false;
+        }
+        float[] pts = mPoints;
+        pts[0] = 0;
+        pts[1] = 0;
+        pts[2] = viewportWidth;
+        pts[3] = viewportHeight;
+        transform.invertPoints(pts);
+        mVisible.set(Math.max(pts[0], 0), Math.max(pts[1], 0), Math.min(pts[2], mWidth), Math.min(pts[3], mHeight));
+        float scale = transform.getScale();
+        boolean sharpValid = mSharp != null && mSharpScale == scale && mSharpRegion.contains(mVisible);
+        if (!sharpValid && settled && mSharpTask == null && !mVisible.isEmpty()) {
+            mSharpTask = new RasterTask(mPicture, mVisible.left, mVisible.top, mVisible.right, mVisible.bottom,
+                    scale, true);
+            mScheduler.submit(mSharpTask, DecodeScheduler.PRIORITY_VISIBLE);
+        }
+        if (!sharpValid && mBase == null) {
+            return false;
+        }
+        int saveCount = canvas.save();
+        canvas.translate(transform.getContentLeft() + transform.getTranslationX(),
+                transform.getContentTop() + transform.getTranslationY());
+        canvas.scale(scale, scale);
+        if (sharpValid) {
+            mSrcRect.set(0, 0, Math.round(mSharpRegion.width() * mSharpScale),
+                    Math.round(mSharpRegion.height() * mSharpScale));
+            canvas.drawBitmap(mSharp, mSrcRect, mSharpRegion, mPaint);
+        } else {
+            mVisible.set(0, 0, mWidth, mHeight);
+            canvas.drawBitmap(mBase, null, mVisible, mPaint);
+        }
+        canvas.restoreToCount(saveCount);
+        return true;
+    }
+
+    /**
+     * Drops a pending sharp raster, e.g. because a new gesture started.
+     */
+    void cancelSharp() {
+        if (mSharpTask != null) {
+            mScheduler.cancel(mSharpTask);
+            mSharpTask = null;
+        }
+    }
+
+    void release() {
+        cancelSharp();
+        if (mBaseTask != null) {
+            mScheduler.cancel(mBaseTask);
+            mBaseTask = null;
+        }
+        mPool.put(mSharp);
+        mSharp = null;
+        mBase = null;
+        mPicture = null;
+    }
+
+    private void onRasterized(RasterTask task, Bitmap bitmap) {
+        if (task == mBaseTask) {
+            mBaseTask = null;
+            mBase = bitmap;
+        } else if (task == mSharpTask) {
+            mSharpTask = null;
+            mPool.put(mSharp);
+            mSharp = bitmap;
+            mSharpRegion.set(task.mLeft, task.mTop, task.mRight, task.mBottom);
+            mSharpScale = task.mScale;
+        } else {
+            mPool.put(bitmap);
+            return;
+        }
+        mHost.invalidate();
+    }
+
+    private class RasterTask extends DecodeScheduler.Task<Bitmap> {
+        private final Picture mTaskPicture;
+        private final float mLeft;
+        private final float mTop;
+        private final float mRight;
+        private final float mBottom;
+        private final float mScale;
+        private final boolean mPooled;
+
+        RasterTask(Picture picture, float left, float top, float right, float bottom, float scale, boolean pooled) {
+            mTaskPicture = picture;
+            mLeft = left;
+            mTop = top;
+            mRight = right;
+            mBottom = bottom;
+            mScale = scale;
+            mPooled = pooled;
+        }
+
+        @Override
+        protected Bitmap doInBackground() {
+            int width = Math.max(1, Math.round((mRight - mLeft) * mScale));
+            int height = Math.max(1, Math.round((mBottom - mTop) * mScale));
+            Bitmap bitmap = mPooled ? mPool.get(width, height, Bitmap.Config.ARGB_8888) : null;
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } else {
+                bitmap.eraseColor(0);
+            }
+            if (isCancelled()) {
+                return bitmap;
+            }
+            Canvas canvas = new Canvas(bitmap);
+            canvas.scale(mScale, mScale);
+            canvas.translate(-mLeft, -mTop);
+            mTaskPicture.draw(canvas);
+            return bitmap;
+        }
+
+        @Override
+        protected void onResult(Bitmap bitmap) {
+            onRasterized(this, bitmap);
+        }
+    }
+}
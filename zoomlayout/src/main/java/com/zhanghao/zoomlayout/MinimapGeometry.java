@@ -0,0 +1,76 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * Maps between child coordinates of a {@link ZoomLayout} and a {@link ZoomMinimapView}, where
+ * the child is fit into the minimap keeping its aspect ratio and centered.
+ */
+class MinimapGeometry {
+    private float mScale;
+    private float mOffsetX;
+    private float mOffsetY;
+    private int mThumbnailWidth;
+    private int mThumbnailHeight;
+
+    /**
+     * @return true if the mapping changed
+     */
+    boolean set(int childWidth, int childHeight, int width, int height) {
+        float scale = 0;
+        if (childWidth > 0 && childHeight > 0 && width > 0 && height > 0) {
+            scale = Math.min((float) width / childWidth, (float) height / childHeight);
+        }
+        int thumbnailWidth = Math.round(childWidth * scale);
+        int thumbnailHeight = Math.round(childHeight * scale);
+        float offsetX = (width - thumbnailWidth) / 2f;
+        float offsetY = (height - thumbnailHeight) / 2f;
+        if (scale == mScale && offsetX == mOffsetX && offsetY == mOffsetY) {
+            return false;
+        }
+        mScale = scale;
+        mOffsetX = offsetX;
+        mOffsetY = offsetY;
+        mThumbnailWidth = thumbnailWidth;
+        mThumbnailHeight = thumbnailHeight;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return mThumbnailWidth <= 0 || mThumbnailHeight <= 0;
+    }
+
+    float getScale() {
+        return mScale;
+    }
+
+    float getOffsetX() {
+        return mOffsetX;
+    }
+
+    float getOffsetY() {
+        return mOffsetY;
+    }
+
+    int getThumbnailWidth() {
+        return mThumbnailWidth;
+    }
+
+    int getThumbnailHeight() {
+        return mThumbnailHeight;
+    }
+
+    float toMinimapX(float childX) {
+        return mOffsetX + childX * mScale;
+    }
+
+    float toMinimapY(float childY) {
+        return mOffsetY + childY * mScale;
+    }
+
+    float toChildX(float minimapX) {
+        return (minimapX - mOffsetX) / mScale;
+    }
+
+    float toChildY(float minimapY) {
+        return (minimapY - mOffsetY) / mScale;
+    }
+}
@@ -0,0 +1,194 @@
+package com.zhanghao.zoomlayout;
+
+import java.util.Arrays;
+
+/**
+ * Region quadtree over axis aligned rectangles identified by {@code int} ids.
+ * <p>
+ * A rectangle is stored in the deepest node that fully contains it, so each one is stored
+ * once and queries never report duplicates. Queries do not allocate. Building the tree
+ * allocates its nodes, it is meant to be rebuilt on layout rather than updated per frame.
+ * <p>
+ * This class has no Android dependencies and is not thread safe.
+ */
+public class QuadTree {
+    private static final int MAX_ITEMS_PER_NODE = 8;
+    private static final int MAX_DEPTH = 10;
+
+    private Node mRoot = new Node(0, 0, 0, 0, 0);
+    private float[] mBounds = new float[0];
+    private int mSize;
+
+    /**
+     * Removes all rectangles and sets the area the tree subdivides. Rectangles outside of it
+     * can still be added, they are just not indexed as finely.
+     */
+    public void reset(float left, float top, float right, float bottom) {
+        mRoot = new Node(left, top, right, bottom, 0);
+        mSize = 0;
+    }
+
+    /**
+     * Adds a rectangle. Ids should be small and dense, e.g. child indices.
+     */
+    public void insert(int id, float left, float top, float right, float bottom) {
+        if (id < 0) {
+            throw new IllegalArgumentException("negative id " + id);
+        }
+        int index = id * 4;
+        if (index + 4 > mBounds.length) {
+            mBounds = Arrays.copyOf(mBounds, Math.max(index + 4, mBounds.length * 2));
+        }
+        mBounds[index] = left;
+        mBounds[index + 1] = top;
+        mBounds[index + 2] = right;
+        mBounds[index + 3] = bottom;
+        mRoot.insert(this, id);
+        mSize++;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Writes the ids of the rectangles intersecting the query into {@code out}, in no
+     * particular order.
+     *
+     * @param out must be able to hold {@link #size()} ids
+     * @return the number of ids written
+     */
+    public int query(float left, float top, float right, float bottom, int[] out) {
+        return mRoot.query(this, left, top, right, bottom, out, 0);
+    }
+
+    /**
+     * Returns the largest id whose rectangle contains the point, or -1.
+     */
+    public int findTopmost(float x, float y) {
+        return mRoot.findTopmost(this, x, y, -1);
+    }
+
+    private boolean intersects(int id, float left, float top, float right, float bottom) {
+        int index = id * 4;
+        return mBounds[index] < right && left < mBounds[index + 2]
+                && mBounds[index + 1] < bottom && top < mBounds[index + 3];
+    }
+
+    private boolean contains(int id, float x, float y) {
+        int index = id * 4;
+        return x >= mBounds[index] && x < mBounds[index + 2]
+                && y >= mBounds[index + 1] && y < mBounds[index + 3];
+    }
+
+    private static final class Node {
+        final float mLeft;
+        final float mTop;
+        final float mRight;
+        final float mBottom;
+        final int mDepth;
+        int[] mItems = new int[MAX_ITEMS_PER_NODE];
+        int mCount;
+        Node[] mChildren;
+
+        Node(float left, float top, float right, float bottom, int depth) {
+            mLeft = left;
+            mTop = top;
+            mRight = right;
+            mBottom = bottom;
+            mDepth = depth;
+        }
+
+        void insert(QuadTree tree, int id) {
+            if (mChildren == null) {
+                if (mCount < MAX_ITEMS_PER_NODE || mDepth == MAX_DEPTH) {
+                    add(id);
+                    return;
+                }
+                split(tree);
+            }
+            Node child = childContaining(tree, id);
+            if (child != null) {
+                child.insert(tree, id);
+            } else {
+                add(id);
+            }
+        }
+
+        private void add(int id) {
+            if (mCount == mItems.length) {
+                mItems = Arrays.copyOf(mItems, mCount * 2);
+            }
+            mItems[mCount++] = id;
+        }
+
+        private void split(QuadTree tree) {
+            float centerX = (mLeft + mRight) / 2;
+            float centerY = (mTop + mBottom) / 2;
+            int depth = mDepth + 1;
+            mChildren = new Node[]{
+                    new Node(mLeft, mTop, centerX, centerY, depth),
+                    new Node(centerX, mTop, mRight, centerY, depth),
+                    new Node(mLeft, centerY, centerX, mBottom, depth),
+                    new Node(centerX, centerY, mRight, mBottom, depth)
+            };
+            int count = mCount;
+            mCount = 0;
+            for (int i = 0; i < count; i++) {
+                int id = mItems[i];
+                Node child = childContaining(tree, id);
+                if (child != null) {
+                    child.add(id);
+                } else {
+                    mItems[mCount++] = id;
+                }
+            }
+        }
+
+        private Node childContaining(QuadTree tree, int id) {
+            int index = id * 4;
+            float[] bounds = tree.mBounds;
+            for (Node child : mChildren) {
+                if (bounds[index] >= child.mLeft && bounds[index + 2] <= child.mRight
+                        && bounds[index + 1] >= child.mTop && bounds[index + 3] <= child.mBottom) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        int query(QuadTree tree, float left, float top, float right, float bottom, int[] out, int count) {
+            for (int i = 0; i < mCount; i++) {
+                int id = mItems[i];
+                if (tree.intersects(id, left, top, right, bottom)) {
+                    out[count++] = id;
+                }
+            }
+            if (mChildren != null) {
+                for (Node child : mChildren) {
+                    if (child.mLeft < right && left < child.mRight && child.mTop < bottom && top < child.mBottom) {
+                        count = child.query(tree, left, top, right, bottom, out, count);
+                    }
+                }
+            }
+            return count;
+        }
+
+        int findTopmost(QuadTree tree, float x, float y, int best) {
+            for (int i = 0; i < mCount; i++) {
+                int id = mItems[i];
+                if (id > best && tree.contains(id, x, y)) {
+                    best = id;
+                }
+            }
+            if (mChildren != null) {
+                for (Node child : mChildren) {
+                    if (x >= child.mLeft && x < child.mRight && y >= child.mTop && y < child.mBottom) {
+                        best = child.findTopmost(tree, x, y, best);
+                    }
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.zhanghao.zoomlayout;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * LRU cache of decoded tiles bounded by the bytes of the cached bitmaps. Tiles dropped from
+ * the cache are handed to a {@link BitmapPool}, if there is one, to be decoded into again.
+ */
+public class TileCache {
+
+    private final LruCache<Long, Bitmap> mCache;
+
+    public TileCache(int maxBytes) {
+        this(maxBytes, null);
+    }
+
+    public TileCache(int maxBytes, final BitmapPool pool) {
+        mCache = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
+                if (pool != null && oldValue != newValue) {
+                    pool.put(oldValue);
+                }
+            }
+        };
+    }
+
+    public static long key(int sampleSize, int col, int row) {
+        return ((long) sampleSize << 48) | ((long) row << 24) | col;
+    }
+
+    public Bitmap get(long key) {
+        return mCache.get(key);
+    }
+
+    public void put(long key, Bitmap bitmap) {
+        mCache.put(key, bitmap);
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    /**
+     * Shrinks the cache for a {@code ComponentCallbacks2} trim level.
+     */
+    public void trimMemory(int level) {
+        mCache.trimToSize((int) (mCache.maxSize() * BitmapPool.retainedFraction(level)));
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    public int maxSize() {
+        return mCache.maxSize();
+    }
+}
@@ -0,0 +1,51 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * The tile grid of {@link TiledImageView}: which sample size an image is decoded at for a
+ * scale, which tiles cover a part of the view, and how many of them can be on screen at once.
+ * <p>
+ * This class has no Android dependencies and is not thread safe.
+ */
+final class TileGrid {
+
+    private TileGrid() {
+    }
+
+    /**
+     * The largest power of two not above {@code scale}, so tiles are never decoded with less
+     * pixels than they are shown with.
+     *
+     * @param scale image pixels per screen pixel
+     */
+    static int sampleSize(float scale) {
+        int sampleSize = 1;
+        while (sampleSize * 2 <= scale) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * The column or row of the tile under a view coordinate, clamped to {@code [0, max]}.
+     *
+     * @param imageScale image pixels per view pixel
+     * @param tileSize   image pixels per tile at the sample size
+     */
+    static int index(float coordinate, float imageScale, int tileSize, int max) {
+        int index = (int) (coordinate * imageScale) / tileSize;
+        return index < 0 ? 0 : index > max ? max : index;
+    }
+
+    /**
+     * The most tiles of {@code tileSize} pixels that the visible range of a viewport and the
+     * ring of tiles around it can hold. The sample size is rounded down, so a tile is shown at
+     * no less than half its size, and a range not aligned to the tiles touches one more.
+     */
+    static int maxTilesWithRing(int viewportWidth, int viewportHeight, int tileSize) {
+        return (maxVisibleTiles(viewportWidth, tileSize) + 2) * (maxVisibleTiles(viewportHeight, tileSize) + 2);
+    }
+
+    private static int maxVisibleTiles(int length, int tileSize) {
+        return (2 * length + tileSize - 1) / tileSize + 1;
+    }
+}
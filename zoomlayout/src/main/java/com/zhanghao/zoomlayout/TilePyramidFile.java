@@ -0,0 +1,334 @@
+package com.zhanghao.zoomlayout;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The tiles of one image at every sample size below its preview, raw ARGB_8888 pixels in a
+ * single indexed file.
+ * <p>
+ * The file starts with a header and a fixed index of every tile of every level, followed by
+ * equally sized slots that tiles are appended to once, the first time they are decoded. An
+ * index entry is only written after its pixels, and the slot count in the header last, so a
+ * file cut short by a crash is still consistent. The file grows by a chunk of
+ * {@value #GROW_SLOTS} slots at a time, and tiles are read back through a read only memory
+ * map of their chunk. A chunk is mapped once, so mappings never add up to more than the file.
+ * <p>
+ * Sample sizes are powers of two, level {@code n} holds the tiles at sample size
+ * {@code 1 << n}. A tile covers {@code tileSize * sampleSize} image pixels per side.
+ * <p>
+ * This class has no Android dependencies and is thread safe.
+ */
+class TilePyramidFile implements Closeable {
+    private static final int MAGIC = 0x5A4C5450;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int SLOT_COUNT_OFFSET = 24;
+    private static final int ENTRY_BYTES = 8;
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int GROW_SLOTS = 16;
+
+    private final TilePyramidStore mStore;
+    private final File mFile;
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+    private final String mKey;
+    private final int mImageWidth;
+    private final int mImageHeight;
+    private final int mTileSize;
+    private final int mLevels;
+    private final int mSlotBytes;
+    private final long mDataStart;
+    private final int[] mLevelStart;
+    private final int[] mLevelCols;
+    private final int[] mLevelRows;
+    // slot + 1 of every tile, 0 while it is not stored
+    private final int[] mSlots;
+    private final int[] mSizes;
+    private final ByteBuffer mEntryBuffer = ByteBuffer.allocate(ENTRY_BYTES);
+    private int mSlotCount;
+    private long mLength;
+    private MappedByteBuffer[] mChunks = new MappedByteBuffer[0];
+    int mOpenCount;
+
+    /**
+     * Opens the pyramid in {@code file}, or starts a new one if the file is missing or was
+     * written for another image size, tile size or level count.
+     *
+     * @param store accounts for the bytes the file grows by after opening, may be null
+     */
+    static TilePyramidFile open(TilePyramidStore store, File file, String key, int imageWidth, int imageHeight,
+                                int tileSize, int levels) throws IOException {
+        if (imageWidth <= 0 || imageHeight <= 0 || tileSize <= 0 || levels <= 0 || levels > 30) {
+            throw new IllegalArgumentException("invalid pyramid " + imageWidth + "x" + imageHeight
+                    + ", tile " + tileSize + ", levels " + levels);
+        }
+        return new TilePyramidFile(store, file, key, imageWidth, imageHeight, tileSize, levels);
+    }
+
+    private TilePyramidFile(TilePyramidStore store, File file, String key, int imageWidth, int imageHeight,
+                            int tileSize, int levels) throws IOException {
+        mStore = store;
+        mFile = file;
+        mKey = key;
+        mImageWidth = imageWidth;
+        mImageHeight = imageHeight;
+        mTileSize = tileSize;
+        mLevels = levels;
+        mSlotBytes = tileSize * tileSize * BYTES_PER_PIXEL;
+        mLevelStart = new int[levels + 1];
+        mLevelCols = new int[levels];
+        mLevelRows = new int[levels];
+        for (int level = 0; level < levels; level++) {
+            long levelTileSize = (long) tileSize << level;
+            mLevelCols[level] = (int) ((imageWidth + levelTileSize - 1) / levelTileSize);
+            mLevelRows[level] = (int) ((imageHeight + levelTileSize - 1) / levelTileSize);
+            mLevelStart[level + 1] = mLevelStart[level] + mLevelCols[level] * mLevelRows[level];
+        }
+        int tileCount = mLevelStart[levels];
+        mSlots = new int[tileCount];
+        mSizes = new int[tileCount];
+        mDataStart = HEADER_BYTES + (long) tileCount * ENTRY_BYTES;
+
+        mRandomAccessFile = new RandomAccessFile(file, "rw");
+        mChannel = mRandomAccessFile.getChannel();
+        try {
+            if (!readIndex()) {
+                writeEmpty();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    String getKey() {
+        return mKey;
+    }
+
+    File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Bytes the file takes on disk.
+     */
+    synchronized long length() {
+        return mLength;
+    }
+
+    /**
+     * Bytes currently mapped for reading.
+     */
+    synchronized long getMappedBytes() {
+        long bytes = 0;
+        for (MappedByteBuffer chunk : mChunks) {
+            if (chunk != null) {
+                bytes += chunk.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    boolean matches(int imageWidth, int imageHeight, int tileSize, int levels) {
+        return imageWidth == mImageWidth && imageHeight == mImageHeight && tileSize == mTileSize && levels == mLevels;
+    }
+
+    int getTileCount() {
+        return mSlots.length;
+    }
+
+    /**
+     * Position of a tile in the index, or -1 if the pyramid has no such tile.
+     */
+    int indexOf(int sampleSize, int col, int row) {
+        if (sampleSize <= 0 || (sampleSize & (sampleSize - 1)) != 0) {
+            return -1;
+        }
+        int level = Integer.numberOfTrailingZeros(sampleSize);
+        if (level >= mLevels || col < 0 || row < 0 || col >= mLevelCols[level] || row >= mLevelRows[level]) {
+            return -1;
+        }
+        return mLevelStart[level] + row * mLevelCols[level] + col;
+    }
+
+    synchronized boolean contains(int sampleSize, int col, int row) {
+        int index = indexOf(sampleSize, col, row);
+        return index >= 0 && mSlots[index] != 0;
+    }
+
+    /**
+     * Width in pixels of a stored tile, 0 if it is not stored.
+     */
+    synchronized int getTileWidth(int sampleSize, int col, int row) {
+        int index = indexOf(sampleSize, col, row);
+        return index >= 0 && mSlots[index] != 0 ? mSizes[index] >>> 16 : 0;
+    }
+
+    synchronized int getTileHeight(int sampleSize, int col, int row) {
+        int index = indexOf(sampleSize, col, row);
+        return index >= 0 && mSlots[index] != 0 ? mSizes[index] & 0xFFFF : 0;
+    }
+
+    /**
+     * Returns the mapped pixels of a stored tile, row by row without padding, or null if the
+     * tile is not stored. The buffer stays valid after the file is closed.
+     */
+    synchronized ByteBuffer getPixels(int sampleSize, int col, int row) throws IOException {
+        int index = indexOf(sampleSize, col, row);
+        if (index < 0 || mSlots[index] == 0) {
+            return null;
+        }
+        int slot = mSlots[index] - 1;
+        int chunk = slot / GROW_SLOTS;
+        if (chunk >= mChunks.length) {
+            mChunks = Arrays.copyOf(mChunks, chunk + 1);
+        }
+        if (mChunks[chunk] == null) {
+            long start = slotOffset(chunk * GROW_SLOTS);
+            mChunks[chunk] = mChannel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min((long) mSlotBytes * GROW_SLOTS, mLength - start));
+        }
+        int offset = (slot % GROW_SLOTS) * mSlotBytes;
+        int size = mSizes[index];
+        ByteBuffer pixels = mChunks[chunk].duplicate();
+        pixels.position(offset);
+        pixels.limit(offset + (size >>> 16) * (size & 0xFFFF) * BYTES_PER_PIXEL);
+        return pixels.slice();
+    }
+
+    /**
+     * Appends the pixels of a tile, unless it is already stored.
+     *
+     * @param pixels {@code width * height * 4} bytes, row by row without padding
+     * @return false if the tile is not part of the pyramid, does not fit its slot or the
+     * store has no room for it
+     */
+    synchronized boolean put(int sampleSize, int col, int row, int width, int height, ByteBuffer pixels)
+            throws IOException {
+        int index = indexOf(sampleSize, col, row);
+        if (index < 0 || width <= 0 || height <= 0 || width > mTileSize || height > mTileSize
+                || pixels.remaining() != width * height * BYTES_PER_PIXEL) {
+            return false;
+        }
+        if (mSlots[index] != 0) {
+            return true;
+        }
+        int slot = mSlotCount;
+        long offset = slotOffset(slot);
+        if (offset + mSlotBytes > mLength && !grow(slotOffset((slot / GROW_SLOTS + 1) * GROW_SLOTS))) {
+            return false;
+        }
+        writeFully(pixels, offset);
+        mEntryBuffer.clear();
+        mEntryBuffer.putInt(slot + 1).putInt(width << 16 | height).flip();
+        writeFully(mEntryBuffer, HEADER_BYTES + (long) index * ENTRY_BYTES);
+        mSlotCount = slot + 1;
+        mEntryBuffer.clear();
+        mEntryBuffer.putInt(mSlotCount).flip();
+        writeFully(mEntryBuffer, SLOT_COUNT_OFFSET);
+        mSlots[index] = slot + 1;
+        mSizes[index] = width << 16 | height;
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mChunks = new MappedByteBuffer[0];
+        mRandomAccessFile.close();
+    }
+
+    private long slotOffset(int slot) {
+        return mDataStart + (long) slot * mSlotBytes;
+    }
+
+    private boolean grow(long length) throws IOException {
+        if (mStore != null && !mStore.reserve(this, length - mLength)) {
+            return false;
+        }
+        mRandomAccessFile.setLength(length);
+        mLength = length;
+        return true;
+    }
+
+    /**
+     * Loads the index of an existing file.
+     *
+     * @return false if there is none for this image
+     */
+    private boolean readIndex() throws IOException {
+        long length = mChannel.size();
+        if (length < mDataStart) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != mImageWidth
+                || header.getInt(12) != mImageHeight || header.getInt(16) != mTileSize
+                || header.getInt(20) != mLevels) {
+            return false;
+        }
+        int slotCount = header.getInt(SLOT_COUNT_OFFSET);
+        if (slotCount < 0 || slotOffset(slotCount) > length) {
+            return false;
+        }
+        ByteBuffer index = ByteBuffer.allocate(mSlots.length * ENTRY_BYTES);
+        readFully(index, HEADER_BYTES);
+        boolean cleared = false;
+        for (int i = 0; i < mSlots.length; i++) {
+            int slot = index.getInt(i * ENTRY_BYTES);
+            if (slot == 0) {
+                continue;
+            }
+            if (slot > 0 && slot <= slotCount) {
+                mSlots[i] = slot;
+                mSizes[i] = index.getInt(i * ENTRY_BYTES + 4);
+                continue;
+            }
+            // written by a put that did not finish. The next put reuses its slot, so the entry
+            // is erased on disk too, or it would be valid again once the slot count passes it
+            index.putLong(i * ENTRY_BYTES, 0);
+            cleared = true;
+        }
+        if (cleared) {
+            index.clear();
+            writeFully(index, HEADER_BYTES);
+        }
+        mSlotCount = slotCount;
+        mLength = length;
+        return true;
+    }
+
+    private void writeEmpty() throws IOException {
+        mRandomAccessFile.setLength(0);
+        mRandomAccessFile.setLength(mDataStart);
+        mLength = mDataStart;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(mImageWidth).putInt(mImageHeight)
+                .putInt(mTileSize).putInt(mLevels).putInt(0).flip();
+        writeFully(header, 0);
+        mSlotCount = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += mChannel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = mChannel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("truncated tile pyramid " + mFile);
+            }
+            position += read;
+        }
+    }
+}
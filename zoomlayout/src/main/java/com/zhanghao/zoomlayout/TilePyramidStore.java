@@ -0,0 +1,217 @@
+package com.zhanghao.zoomlayout;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Directory of tile pyramids, one file per image, that {@link TiledImageView} reads tiles
+ * from instead of decoding them again, across app starts.
+ * <p>
+ * The store is bounded by the bytes of all its files. When a pyramid has to grow past that,
+ * the least recently used pyramids that are not open are deleted, and if that is not enough
+ * the tile is simply not stored. A directory under {@code Context.getCacheDir()} is a good
+ * place for it, the system may also delete the files when it runs low on storage.
+ * <p>
+ * This class has no Android dependencies and is thread safe. Files are opened and written
+ * on the decode threads, never on the main thread.
+ */
+public class TilePyramidStore {
+    private static final String SUFFIX = ".tiles";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final Map<String, TilePyramidFile> mOpenFiles = new HashMap<>();
+    // -1 until the directory was scanned
+    private long mSize = -1;
+
+    public TilePyramidStore(File directory, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * Bytes of all pyramids in the directory.
+     */
+    public synchronized long size() {
+        ensureScanned();
+        return mSize;
+    }
+
+    public long maxSize() {
+        return mMaxBytes;
+    }
+
+    /**
+     * Deletes the pyramids that are not open.
+     */
+    public synchronized void clear() {
+        ensureScanned();
+        trimToSize(0);
+    }
+
+    /**
+     * Opens the pyramid of an image, creating it if needed. Opening a key that is already
+     * open returns the same file, every open has to be matched by {@link #close}.
+     *
+     * @param key identifies the image content, e.g. its path, size and modification time
+     */
+    synchronized TilePyramidFile open(String key, int imageWidth, int imageHeight, int tileSize, int levels)
+            throws IOException {
+        TilePyramidFile pyramid = mOpenFiles.get(key);
+        if (pyramid != null) {
+            if (!pyramid.matches(imageWidth, imageHeight, tileSize, levels)) {
+                throw new IOException("pyramid " + key + " is open with another layout");
+            }
+            pyramid.mOpenCount++;
+            return pyramid;
+        }
+        ensureScanned();
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("cannot create " + mDirectory);
+        }
+        File file = new File(mDirectory, fileName(key));
+        long previousLength = file.length();
+        try {
+            pyramid = TilePyramidFile.open(this, file, key, imageWidth, imageHeight, tileSize, levels);
+        } finally {
+            // a file of another layout is started over
+            mSize += file.length() - previousLength;
+        }
+        // the modification time orders pyramids for eviction
+        file.setLastModified(System.currentTimeMillis());
+        pyramid.mOpenCount = 1;
+        mOpenFiles.put(key, pyramid);
+        if (mSize > mMaxBytes) {
+            trimToSize(mMaxBytes);
+        }
+        return pyramid;
+    }
+
+    void close(TilePyramidFile pyramid) {
+        synchronized (this) {
+            if (mOpenFiles.get(pyramid.getKey()) != pyramid || --pyramid.mOpenCount > 0) {
+                return;
+            }
+            mOpenFiles.remove(pyramid.getKey());
+        }
+        // outside of the store lock, a decode thread may be holding the file's lock while
+        // it waits for reserve()
+        try {
+            pyramid.close();
+        } catch (IOException e) {
+            // nothing was pending, the index is written with every tile
+        }
+    }
+
+    /**
+     * Makes room for {@code pyramid} to grow by {@code bytes}, deleting the least recently
+     * used pyramids that are not open.
+     *
+     * @return false if the store is full of open pyramids
+     */
+    synchronized boolean reserve(TilePyramidFile pyramid, long bytes) {
+        ensureScanned();
+        if (mSize + bytes > mMaxBytes) {
+            trimToSize(mMaxBytes - bytes);
+        }
+        if (mSize + bytes > mMaxBytes) {
+            return false;
+        }
+        mSize += bytes;
+        pyramid.getFile().setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    private void ensureScanned() {
+        if (mSize >= 0) {
+            return;
+        }
+        long size = 0;
+        for (File file : listPyramids()) {
+            size += file.length();
+        }
+        mSize = size;
+    }
+
+    private void trimToSize(long maxBytes) {
+        File[] files = listPyramids();
+        List<File> candidates = new ArrayList<>(files.length);
+        // the modification time is read once, it may change while sorting
+        final Map<File, Long> times = new HashMap<>();
+        for (File file : files) {
+            if (!isOpen(file)) {
+                candidates.add(file);
+                times.put(file, file.lastModified());
+            }
+        }
+        Collections.sort(candidates, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long timeA = times.get(a);
+                long timeB = times.get(b);
+                return timeA < timeB ? -1 : timeA == timeB ? 0 : 1;
+            }
+        });
+        for (int i = 0; i < candidates.size() && mSize > maxBytes; i++) {
+            File file = candidates.get(i);
+            long length = file.length();
+            if (file.delete()) {
+                mSize -= length;
+            }
+        }
+    }
+
+    private boolean isOpen(File file) {
+        for (TilePyramidFile pyramid : mOpenFiles.values()) {
+            if (pyramid.getFile().equals(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private File[] listPyramids() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.append(SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
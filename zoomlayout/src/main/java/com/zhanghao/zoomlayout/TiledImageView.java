@@ -0,0 +1,720 @@
+package com.zhanghao.zoomlayout;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.View;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Image view for images too large to be decoded at once.
+ * <p>
+ * The view is measured to fit the image. A low resolution preview is drawn first, and when
+ * hosted by a {@link ZoomLayout} only the visible tiles are decoded with
+ * {@link BitmapRegionDecoder}, at the sample size that matches the current scale. Decoded
+ * tiles are kept in a {@link TileCache} bounded by a few screens worth of pixels, so memory
+ * use depends on the screen size instead of the image size.
+ * <p>
+ * Tiles for the area a fling or drag is heading to are requested ahead of time, and dropped
+ * again if they did not start decoding when the prediction is cancelled.
+ * <p>
+ * Tiles are decoded on a {@link DecodeScheduler}, visible tiles first, then the ring of tiles
+ * around them, then prefetched ones. Queued tiles that leave the viewport are cancelled.
+ * <p>
+ * Tiles are decoded into bitmaps from a shared {@link BitmapPool} that evicted tiles return
+ * to, and the tile cache shrinks when the system runs low on memory.
+ * <p>
+ * With a {@link TilePyramidStore} every decoded tile is also written once to the image's
+ * pyramid file, and read back from its memory map instead of being decoded again, also
+ * after the app was restarted.
+ */
+public class TiledImageView extends View implements ViewportAware, ViewportPrefetcher {
+    private static final String TAG = "TiledImageView";
+    private static final int TILE_SIZE = 256;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    // one tile of pixels per decode thread, to move pixels between pooled bitmaps and pyramids
+    private static final ThreadLocal<ByteBuffer> sTileBuffer = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(TILE_SIZE * TILE_SIZE * BYTES_PER_PIXEL);
+        }
+    };
+
+    private BitmapRegionDecoder mDecoder;
+    private int mImageWidth;
+    private int mImageHeight;
+    private Bitmap mPreview;
+    private int mPreviewSampleSize;
+    private TileCache mTileCache;
+    private final BitmapPool mBitmapPool;
+    private DecodeScheduler mScheduler;
+    private TilePyramidStore mPyramidStore;
+    private PyramidHandle mPyramid;
+    private final Map<Long, DecodeTask> mPendingTiles = new HashMap<>();
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mTileRect = new Rect();
+    private final Rect mSrcRect = new Rect();
+    private final RectF mDrawRect = new RectF();
+    private final RectF mVisibleRect = new RectF();
+    private final float[] mVisiblePoints = new float[4];
+    private boolean mHasViewport;
+    private float mViewportScale = 1;
+    private int mSampleSize;
+    private int mFirstCol;
+    private int mFirstRow;
+    private int mLastCol = -1;
+    private int mLastRow = -1;
+
+    public TiledImageView(Context context) {
+        this(context, null);
+    }
+
+    public TiledImageView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public TiledImageView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        DisplayMetrics dm = context.getResources().getDisplayMetrics();
+        mBitmapPool = BitmapPool.getDefault(context);
+        // room for every tile that can be on screen at once and the ring around them, an
+        // evicted visible tile is not requested again until the visible range changes
+        mTileCache = new TileCache(TileGrid.maxTilesWithRing(dm.widthPixels, dm.heightPixels, TILE_SIZE)
+                * TILE_SIZE * TILE_SIZE * BYTES_PER_PIXEL, mBitmapPool);
+    }
+
+    public void setImage(String filePath) throws IOException {
+        File file = new File(filePath);
+        setDecoder(BitmapRegionDecoder.newInstance(filePath, false),
+                filePath + ":" + file.length() + ":" + file.lastModified());
+    }
+
+    public void setImage(InputStream stream) throws IOException {
+        setDecoder(BitmapRegionDecoder.newInstance(stream, false), null);
+    }
+
+    /**
+     * Sets an image from a stream whose tiles can be kept in the {@link TilePyramidStore}.
+     *
+     * @param cacheKey changes whenever the content of the stream does
+     */
+    public void setImage(InputStream stream, String cacheKey) throws IOException {
+        setDecoder(BitmapRegionDecoder.newInstance(stream, false), cacheKey);
+    }
+
+    /**
+     * Sets the store decoded tiles are kept in on disk, none by default. Takes effect with
+     * the next image.
+     */
+    public void setTilePyramidStore(TilePyramidStore store) {
+        mPyramidStore = store;
+    }
+
+    /**
+     * Sets the scheduler tiles are decoded on, {@link DecodeScheduler#getDefault()} by default.
+     */
+    public void setDecodeScheduler(DecodeScheduler scheduler) {
+        cancelPendingTiles();
+        mScheduler = scheduler;
+    }
+
+    private DecodeScheduler scheduler() {
+        if (mScheduler == null) {
+            mScheduler = DecodeScheduler.getDefault();
+        }
+        return mScheduler;
+    }
+
+    public void setTileCache(TileCache tileCache) {
+        mTileCache.clear();
+        mTileCache = tileCache;
+    }
+
+    public int getImageWidth() {
+        return mImageWidth;
+    }
+
+    public int getImageHeight() {
+        return mImageHeight;
+    }
+
+    private void setDecoder(BitmapRegionDecoder decoder, String cacheKey) {
+        if (mDecoder != null) {
+            mDecoder.recycle();
+        }
+        if (mPyramid != null) {
+            mPyramid.release();
+            mPyramid = null;
+        }
+        mDecoder = decoder;
+        mImageWidth = decoder.getWidth();
+        mImageHeight = decoder.getHeight();
+        mPreview = null;
+        cancelPendingTiles();
+        mTileCache.clear();
+        mLastCol = -1;
+        mLastRow = -1;
+        DisplayMetrics dm = getResources().getDisplayMetrics();
+        mPreviewSampleSize = TileGrid.sampleSize(
+                Math.max((float) mImageWidth / dm.widthPixels, (float) mImageHeight / dm.heightPixels));
+        // tiles are only decoded at the sample sizes below the preview
+        int levels = Integer.numberOfTrailingZeros(mPreviewSampleSize);
+        if (mPyramidStore != null && cacheKey != null && levels > 0) {
+            mPyramid = new PyramidHandle(mPyramidStore, cacheKey, mImageWidth, mImageHeight, levels);
+        }
+        scheduler().submit(new DecodeTask(decoder, null, -1, 0, 0, mPreviewSampleSize,
+                new Rect(0, 0, mImageWidth, mImageHeight)), DecodeScheduler.PRIORITY_VISIBLE);
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mDecoder == null) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+        int width = widthMode == MeasureSpec.UNSPECIFIED ? mImageWidth : MeasureSpec.getSize(widthMeasureSpec);
+        int height = heightMode == MeasureSpec.UNSPECIFIED ? mImageHeight : MeasureSpec.getSize(heightMeasureSpec);
+        float ratio = Math.min((float) width / mImageWidth, (float) height / mImageHeight);
+        if (widthMode != MeasureSpec.EXACTLY) {
+            width = Math.round(mImageWidth * ratio);
+        }
+        if (heightMode != MeasureSpec.EXACTLY) {
+            height = Math.round(mImageHeight * ratio);
+        }
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateTiles();
+    }
+
+    @Override
+    public void onViewportChanged(ViewportTransform transform, int viewportWidth, int viewportHeight) {
+        float[] pts = mVisiblePoints;
+        pts[0] = 0;
+        pts[1] = 0;
+        pts[2] = viewportWidth;
+        pts[3] = viewportHeight;
+        transform.invertPoints(pts);
+        mVisibleRect.set(pts[0], pts[1], pts[2], pts[3]);
+        mViewportScale = transform.getScale();
+        mHasViewport = true;
+        updateTiles();
+    }
+
+    /**
+     * Recomputes the sample size and the visible tile range, requests the missing tiles and
+     * redraws if any of them changed.
+     */
+    private void updateTiles() {
+        int width = getWidth();
+        int height = getHeight();
+        if (mDecoder == null || width == 0 || height == 0) {
+            return;
+        }
+        if (!mHasViewport) {
+            mVisibleRect.set(0, 0, width, height);
+        }
+        float imageScale = imageScale();
+        int sampleSize = TileGrid.sampleSize(imageScale / mViewportScale);
+        int tileSize = TILE_SIZE * sampleSize;
+        int maxCol = (mImageWidth - 1) / tileSize;
+        int maxRow = (mImageHeight - 1) / tileSize;
+        int firstCol = TileGrid.index(mVisibleRect.left, imageScale, tileSize, maxCol);
+        int firstRow = TileGrid.index(mVisibleRect.top, imageScale, tileSize, maxRow);
+        int lastCol = TileGrid.index(mVisibleRect.right, imageScale, tileSize, maxCol);
+        int lastRow = TileGrid.index(mVisibleRect.bottom, imageScale, tileSize, maxRow);
+        if (sampleSize == mSampleSize && firstCol == mFirstCol && firstRow == mFirstRow
+                && lastCol == mLastCol && lastRow == mLastRow) {
+            return;
+        }
+        mSampleSize = sampleSize;
+        mFirstCol = firstCol;
+        mFirstRow = firstRow;
+        mLastCol = lastCol;
+        mLastRow = lastRow;
+        cancelTilesOutside(sampleSize, firstCol - 1, firstRow - 1, lastCol + 1, lastRow + 1);
+        if (sampleSize < mPreviewSampleSize) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    requestTileIfNeeded(sampleSize, col, row, DecodeScheduler.PRIORITY_VISIBLE);
+                }
+            }
+            requestRingIfNeeded(sampleSize, firstCol - 1, firstRow - 1, lastCol + 1, lastRow + 1, maxCol, maxRow);
+        }
+        invalidate();
+    }
+
+    /**
+     * Requests the tiles on the border of the given range, the ones a small pan exposes next.
+     */
+    private void requestRingIfNeeded(int sampleSize, int firstCol, int firstRow, int lastCol, int lastRow,
+                                     int maxCol, int maxRow) {
+        for (int row = Math.max(firstRow, 0); row <= Math.min(lastRow, maxRow); row++) {
+            for (int col = Math.max(firstCol, 0); col <= Math.min(lastCol, maxCol); col++) {
+                if (row == firstRow || row == lastRow || col == firstCol || col == lastCol) {
+                    requestTileIfNeeded(sampleSize, col, row, DecodeScheduler.PRIORITY_NEAR);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels the queued tiles outside of the range or at another sample size. Prefetched
+     * tiles are kept, they are cancelled with the prediction.
+     */
+    private void cancelTilesOutside(int sampleSize, int firstCol, int firstRow, int lastCol, int lastRow) {
+        Iterator<DecodeTask> it = mPendingTiles.values().iterator();
+        while (it.hasNext()) {
+            DecodeTask task = it.next();
+            if (task.mPrefetch) {
+                continue;
+            }
+            if (task.mSampleSize != sampleSize || task.mCol < firstCol || task.mCol > lastCol
+                    || task.mRow < firstRow || task.mRow > lastRow) {
+                scheduler().cancel(task);
+                it.remove();
+            }
+        }
+    }
+
+    private void cancelPendingTiles() {
+        for (DecodeTask task : mPendingTiles.values()) {
+            scheduler().cancel(task);
+        }
+        mPendingTiles.clear();
+    }
+
+    private void requestTileIfNeeded(int sampleSize, int col, int row, int priority) {
+        long key = TileCache.key(sampleSize, col, row);
+        if (mTileCache.get(key) != null) {
+            return;
+        }
+        boolean prefetch = priority == DecodeScheduler.PRIORITY_PREFETCH;
+        DecodeTask pending = mPendingTiles.get(key);
+        if (pending != null) {
+            // a prefetched tile became visible, it must not be cancelled anymore
+            pending.mPrefetch &= prefetch;
+            if (priority < pending.getPriority()) {
+                scheduler().setPriority(pending, priority);
+            }
+            return;
+        }
+        int tileSize = TILE_SIZE * sampleSize;
+        Rect region = new Rect(col * tileSize, row * tileSize,
+                Math.min((col + 1) * tileSize, mImageWidth), Math.min((row + 1) * tileSize, mImageHeight));
+        DecodeTask task = new DecodeTask(mDecoder, mPyramid, key, col, row, sampleSize, region);
+        task.mPrefetch = prefetch;
+        mPendingTiles.put(key, task);
+        scheduler().submit(task, priority);
+    }
+
+    @Override
+    public void onPrefetch(RectF contentRect, float scale) {
+        int width = getWidth();
+        int height = getHeight();
+        if (mDecoder == null || width == 0 || height == 0) {
+            return;
+        }
+        float imageScale = imageScale();
+        int sampleSize = TileGrid.sampleSize(imageScale / scale);
+        if (sampleSize >= mPreviewSampleSize) {
+            return;
+        }
+        int tileSize = TILE_SIZE * sampleSize;
+        int maxCol = (mImageWidth - 1) / tileSize;
+        int maxRow = (mImageHeight - 1) / tileSize;
+        int firstCol = TileGrid.index(contentRect.left, imageScale, tileSize, maxCol);
+        int firstRow = TileGrid.index(contentRect.top, imageScale, tileSize, maxRow);
+        int lastCol = TileGrid.index(contentRect.right, imageScale, tileSize, maxCol);
+        int lastRow = TileGrid.index(contentRect.bottom, imageScale, tileSize, maxRow);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                requestTileIfNeeded(sampleSize, col, row, DecodeScheduler.PRIORITY_PREFETCH);
+            }
+        }
+    }
+
+    @Override
+    public void onCancelPrefetch() {
+        Iterator<DecodeTask> it = mPendingTiles.values().iterator();
+        while (it.hasNext()) {
+            DecodeTask task = it.next();
+            if (task.mPrefetch) {
+                scheduler().cancel(task);
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mDecoder == null) {
+            return;
+        }
+        if (mPreview != null) {
+            mDrawRect.set(0, 0, getWidth(), getHeight());
+            canvas.drawBitmap(mPreview, null, mDrawRect, mPaint);
+        }
+        if (mSampleSize >= mPreviewSampleSize) {
+            return;
+        }
+        float imageScale = imageScale();
+        int tileSize = TILE_SIZE * mSampleSize;
+        for (int row = mFirstRow; row <= mLastRow; row++) {
+            for (int col = mFirstCol; col <= mLastCol; col++) {
+                Bitmap tile = mTileCache.get(TileCache.key(mSampleSize, col, row));
+                if (tile == null) {
+                    continue;
+                }
+                mTileRect.set(col * tileSize, row * tileSize,
+                        Math.min((col + 1) * tileSize, mImageWidth), Math.min((row + 1) * tileSize, mImageHeight));
+                // pooled bitmaps are full tiles, edge tiles only fill their top left part
+                mSrcRect.set(0, 0, (mTileRect.width() + mSampleSize - 1) / mSampleSize,
+                        (mTileRect.height() + mSampleSize - 1) / mSampleSize);
+                mDrawRect.set(mTileRect.left / imageScale, mTileRect.top / imageScale,
+                        mTileRect.right / imageScale, mTileRect.bottom / imageScale);
+                canvas.drawBitmap(tile, mSrcRect, mDrawRect, mPaint);
+            }
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getContext().getApplicationContext().registerComponentCallbacks(mMemoryCallbacks);
+        if (mPyramid != null) {
+            mPyramid.reopen();
+        }
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if (visibility == VISIBLE) {
+            // tiles may have been trimmed while hidden
+            requestTilesAgain();
+        }
+    }
+
+    private void requestTilesAgain() {
+        mLastCol = -1;
+        mLastRow = -1;
+        updateTiles();
+    }
+
+    private final ComponentCallbacks2 mMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            mTileCache.trimMemory(level);
+            if (level < TRIM_MEMORY_UI_HIDDEN) {
+                requestTilesAgain();
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            mTileCache.clear();
+        }
+    };
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        getContext().getApplicationContext().unregisterComponentCallbacks(mMemoryCallbacks);
+        cancelPendingTiles();
+        mTileCache.clear();
+        if (mPyramid != null) {
+            // opened again by the next tile once attached
+            mPyramid.close();
+        }
+        mLastCol = -1;
+        mLastRow = -1;
+    }
+
+    /**
+     * Image pixels per view pixel at scale 1.
+     */
+    private float imageScale() {
+        return Math.max((float) mImageWidth / getWidth(), (float) mImageHeight / getHeight());
+    }
+
+    private void onTileDecoded(DecodeTask task, Bitmap bitmap) {
+        if (task.mTaskDecoder != mDecoder) {
+            mBitmapPool.put(bitmap);
+            return;
+        }
+        long key = task.mKey;
+        if (key == -1) {
+            mPreview = bitmap;
+            invalidate();
+            return;
+        }
+        mPendingTiles.remove(key);
+        if (bitmap != null) {
+            mTileCache.put(key, bitmap);
+            invalidate();
+        }
+    }
+
+    /**
+     * Opens the pyramid file of an image on the first tile that needs it, on a decode
+     * thread, and keeps it open until the view is detached. The lock only guards the fields,
+     * the file is opened and closed outside of it so the UI thread never waits for the disk.
+     */
+    private static class PyramidHandle {
+        private final TilePyramidStore mStore;
+        private final String mKey;
+        private final int mImageWidth;
+        private final int mImageHeight;
+        private final int mLevels;
+        private TilePyramidFile mFile;
+        // set while detached, a tile still decoding must not open the file again
+        private boolean mClosed;
+        private boolean mReleased;
+
+        PyramidHandle(TilePyramidStore store, String key, int imageWidth, int imageHeight, int levels) {
+            mStore = store;
+            mKey = key;
+            mImageWidth = imageWidth;
+            mImageHeight = imageHeight;
+            mLevels = levels;
+        }
+
+        /**
+         * @return null if the file is closed or cannot be opened
+         */
+        TilePyramidFile get() {
+            synchronized (this) {
+                if (mFile != null || mClosed || mReleased) {
+                    return mFile;
+                }
+            }
+            TilePyramidFile file;
+            try {
+                file = mStore.open(mKey, mImageWidth, mImageHeight, TILE_SIZE, mLevels);
+            } catch (IOException e) {
+                Log.w(TAG, "open tile pyramid failed", e);
+                synchronized (this) {
+                    mReleased = true;
+                }
+                return null;
+            }
+            synchronized (this) {
+                if (mFile == null && !mClosed && !mReleased) {
+                    mFile = file;
+                    return file;
+                }
+            }
+            // closed meanwhile, or opened by another decode thread
+            mStore.close(file);
+            synchronized (this) {
+                return mFile;
+            }
+        }
+
+        /**
+         * Closes the file until {@link #reopen()}.
+         */
+        void close() {
+            TilePyramidFile file;
+            synchronized (this) {
+                mClosed = true;
+                file = mFile;
+                mFile = null;
+            }
+            if (file != null) {
+                mStore.close(file);
+            }
+        }
+
+        /**
+         * Lets the next tile open the file again, the view was attached.
+         */
+        synchronized void reopen() {
+            mClosed = false;
+        }
+
+        /**
+         * Closes the file for good, the image was replaced.
+         */
+        void release() {
+            synchronized (this) {
+                mReleased = true;
+            }
+            close();
+        }
+    }
+
+    private class DecodeTask extends DecodeScheduler.Task<Bitmap> {
+        private final BitmapRegionDecoder mTaskDecoder;
+        private final PyramidHandle mTaskPyramid;
+        private final long mKey;
+        private final int mCol;
+        private final int mRow;
+        private final int mSampleSize;
+        private final Rect mRegion;
+        boolean mPrefetch;
+
+        DecodeTask(BitmapRegionDecoder decoder, PyramidHandle pyramid, long key, int col, int row,
+                   int sampleSize, Rect region) {
+            mTaskDecoder = decoder;
+            mTaskPyramid = pyramid;
+            mKey = key;
+            mCol = col;
+            mRow = row;
+            mSampleSize = sampleSize;
+            mRegion = region;
+        }
+
+        @Override
+        protected Bitmap doInBackground() {
+            Bitmap pooled = null;
+            if (mKey != -1) {
+                pooled = mBitmapPool.get(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+            }
+            TilePyramidFile pyramid = mTaskPyramid != null ? mTaskPyramid.get() : null;
+            if (pyramid != null) {
+                Bitmap stored = readStoredTile(pyramid, pooled);
+                if (stored != null) {
+                    return stored;
+                }
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = mSampleSize;
+            options.inMutable = true;
+            options.inBitmap = pooled;
+            Bitmap bitmap;
+            try {
+                bitmap = decode(options);
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                // decoder recycled because the image was replaced
+                Log.w(TAG, "decode tile " + mCol + "," + mRow + " failed", e);
+                return null;
+            }
+            if (pyramid != null && bitmap != null && !isCancelled()) {
+                storeTile(pyramid, bitmap);
+            }
+            return bitmap;
+        }
+
+        /**
+         * Copies a tile out of the pyramid's memory map into the top left of {@code pooled},
+         * or of a new full tile bitmap if there is none. Like a decode into
+         * {@code inBitmap}, the bitmap keeps its size, so it goes back to the pool as a full
+         * tile.
+         *
+         * @return null if the tile is not stored
+         */
+        private Bitmap readStoredTile(TilePyramidFile pyramid, Bitmap pooled) {
+            try {
+                ByteBuffer pixels = pyramid.getPixels(mSampleSize, mCol, mRow);
+                if (pixels == null) {
+                    return null;
+                }
+                int width = pyramid.getTileWidth(mSampleSize, mCol, mRow);
+                int height = pyramid.getTileHeight(mSampleSize, mCol, mRow);
+                Bitmap bitmap = pooled != null ? pooled
+                        : Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+                if (width == bitmap.getWidth() && height == bitmap.getHeight()) {
+                    bitmap.copyPixelsFromBuffer(pixels);
+                    return bitmap;
+                }
+                // an edge tile, its rows are spread to the bitmap's row stride
+                ByteBuffer buffer = sTileBuffer.get();
+                byte[] array = buffer.array();
+                int rowBytes = width * BYTES_PER_PIXEL;
+                int stride = bitmap.getRowBytes();
+                for (int row = 0; row < height; row++) {
+                    pixels.get(array, row * stride, rowBytes);
+                }
+                buffer.clear();
+                buffer.limit(bitmap.getByteCount());
+                bitmap.copyPixelsFromBuffer(buffer);
+                return bitmap;
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "read stored tile " + mCol + "," + mRow + " failed", e);
+                return null;
+            }
+        }
+
+        /**
+         * Writes the part of {@code bitmap} that holds the tile's region to the pyramid, a
+         * pooled bitmap holds an edge tile in its top left part only.
+         */
+        private void storeTile(TilePyramidFile pyramid, Bitmap bitmap) {
+            ByteBuffer buffer = sTileBuffer.get();
+            if (bitmap.getConfig() != Bitmap.Config.ARGB_8888 || bitmap.getByteCount() > buffer.capacity()) {
+                return;
+            }
+            int width = Math.min((mRegion.width() + mSampleSize - 1) / mSampleSize, bitmap.getWidth());
+            int height = Math.min((mRegion.height() + mSampleSize - 1) / mSampleSize, bitmap.getHeight());
+            buffer.clear();
+            buffer.limit(bitmap.getByteCount());
+            bitmap.copyPixelsToBuffer(buffer);
+            // rows are moved down in place, a row never overlaps one that is still to move
+            byte[] array = buffer.array();
+            int rowBytes = width * BYTES_PER_PIXEL;
+            int stride = bitmap.getRowBytes();
+            if (stride != rowBytes) {
+                for (int row = 1; row < height; row++) {
+                    System.arraycopy(array, row * stride, array, row * rowBytes, rowBytes);
+                }
+            }
+            buffer.position(0);
+            buffer.limit(rowBytes * height);
+            try {
+                pyramid.put(mSampleSize, mCol, mRow, width, height, buffer);
+            } catch (IOException e) {
+                Log.w(TAG, "store tile " + mCol + "," + mRow + " failed", e);
+            }
+        }
+
+        private Bitmap decode(BitmapFactory.Options options) {
+            try {
+                return mTaskDecoder.decodeRegion(mRegion, options);
+            } catch (IllegalArgumentException e) {
+                if (options.inBitmap == null) {
+                    throw e;
+                }
+                // the pooled bitmap cannot be decoded into, e.g. the image is not ARGB_8888
+                options.inBitmap = null;
+                return mTaskDecoder.decodeRegion(mRegion, options);
+            }
+        }
+
+        @Override
+        protected void onResult(Bitmap bitmap) {
+            onTileDecoded(this, bitmap);
+        }
+    }
+}
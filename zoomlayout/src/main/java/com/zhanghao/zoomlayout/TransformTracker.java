@@ -0,0 +1,34 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * Remembers the {@link ViewportTransform#getGeneration() generation} of a transform a
+ * consumer applied last, so all writes made during one frame are applied with a single
+ * update, see {@code ZoomLayout.computeScroll()}.
+ * <p>
+ * This class has no Android dependencies and is not thread safe.
+ */
+class TransformTracker {
+    private int mAppliedGeneration = -1;
+
+    /**
+     * Marks the current state of {@code transform} as applied.
+     *
+     * @return false if it was already applied, nothing has to be updated
+     */
+    boolean apply(ViewportTransform transform) {
+        int generation = transform.getGeneration();
+        if (generation == mAppliedGeneration) {
+            return false;
+        }
+        mAppliedGeneration = generation;
+        return true;
+    }
+
+    /**
+     * Makes the next {@link #apply} update even if the transform did not change, e.g. after
+     * the viewport or the transform instance changed.
+     */
+    void invalidate() {
+        mAppliedGeneration = -1;
+    }
+}
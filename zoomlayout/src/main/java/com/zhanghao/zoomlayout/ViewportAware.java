@@ -0,0 +1,17 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * Implemented by a {@link ZoomLayout} child that renders only what is visible, for example
+ * {@link TiledImageView}.
+ */
+public interface ViewportAware {
+
+    /**
+     * Called at most once per frame after the transform of the child changed.
+     *
+     * @param transform      content (the child) to viewport transform, must not be modified
+     * @param viewportWidth  width of the {@link ZoomLayout}
+     * @param viewportHeight height of the {@link ZoomLayout}
+     */
+    void onViewportChanged(ViewportTransform transform, int viewportWidth, int viewportHeight);
+}
@@ -0,0 +1,22 @@
+package com.zhanghao.zoomlayout;
+
+import android.graphics.RectF;
+
+/**
+ * Implemented by a child of {@link ZoomLayout} that can load its content ahead of time,
+ * e.g. for the area a fling is going to land on.
+ */
+public interface ViewportPrefetcher {
+
+    /**
+     * The viewport is expected to show {@code contentRect}, in the coordinates of the child,
+     * at {@code scale} soon. The rect is only valid during the call.
+     */
+    void onPrefetch(RectF contentRect, float scale);
+
+    /**
+     * The prediction is obsolete (e.g. the user touched the screen again), prefetch work that
+     * did not start yet can be dropped.
+     */
+    void onCancelPrefetch();
+}
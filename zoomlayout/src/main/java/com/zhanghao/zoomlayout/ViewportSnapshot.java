@@ -0,0 +1,94 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * State of a {@link ZoomLayout} viewport as reported to
+ * {@link ZoomLayout.OnViewportChangeListener}.
+ * <p>
+ * The instance is reused for every report and only valid during the callback, copy the
+ * values that are needed later. It must not be modified.
+ */
+public class ViewportSnapshot {
+    private final float[] mPoints = new float[4];
+    private float mScale = 1;
+    private float mTranslationX;
+    private float mTranslationY;
+    private int mViewportWidth;
+    private int mViewportHeight;
+    private float mVisibleLeft;
+    private float mVisibleTop;
+    private float mVisibleRight;
+    private float mVisibleBottom;
+    private int mGeneration;
+
+    void set(ViewportTransform transform, int viewportWidth, int viewportHeight) {
+        mScale = transform.getScale();
+        mTranslationX = transform.getTranslationX();
+        mTranslationY = transform.getTranslationY();
+        mViewportWidth = viewportWidth;
+        mViewportHeight = viewportHeight;
+        float[] pts = mPoints;
+        pts[0] = 0;
+        pts[1] = 0;
+        pts[2] = viewportWidth;
+        pts[3] = viewportHeight;
+        transform.invertPoints(pts);
+        mVisibleLeft = pts[0];
+        mVisibleTop = pts[1];
+        mVisibleRight = pts[2];
+        mVisibleBottom = pts[3];
+        mGeneration = transform.getGeneration();
+    }
+
+    public float getScale() {
+        return mScale;
+    }
+
+    public float getTranslationX() {
+        return mTranslationX;
+    }
+
+    public float getTranslationY() {
+        return mTranslationY;
+    }
+
+    public int getViewportWidth() {
+        return mViewportWidth;
+    }
+
+    public int getViewportHeight() {
+        return mViewportHeight;
+    }
+
+    /**
+     * Left of the visible area in child coordinates.
+     */
+    public float getVisibleLeft() {
+        return mVisibleLeft;
+    }
+
+    public float getVisibleTop() {
+        return mVisibleTop;
+    }
+
+    public float getVisibleRight() {
+        return mVisibleRight;
+    }
+
+    public float getVisibleBottom() {
+        return mVisibleBottom;
+    }
+
+    /**
+     * Changes with every transform change, see {@link ViewportTransform#getGeneration()}.
+     */
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    @Override
+    public String toString() {
+        return "ViewportSnapshot{scale=" + mScale
+                + ", translation=(" + mTranslationX + ", " + mTranslationY + ")"
+                + ", visible=(" + mVisibleLeft + ", " + mVisibleTop + ", " + mVisibleRight + ", " + mVisibleBottom + ")}";
+    }
+}
@@ -0,0 +1,363 @@
+package com.zhanghao.zoomlayout;
+
+/**
+ * Scale + translate transform that maps the content (the child of {@link ZoomLayout})
+ * into the viewport.
+ * <p>
+ * A point {@code p} in content coordinates is drawn at
+ * {@code contentLeft + translationX + scale * p.x} in viewport coordinates (pivot at the
+ * content origin). The inverse is cached and only recomputed after the transform changes.
+ * <p>
+ * Every effective change bumps {@link #getGeneration()}, so a consumer can apply all writes
+ * made during one frame with a single update.
+ * <p>
+ * This class has no Android dependencies and is not thread safe.
+ */
+public class ViewportTransform {
+
+    private float mScale = 1;
+    private float mTranslationX;
+    private float mTranslationY;
+    private float mMinScale = 1;
+    private float mMaxScale = 1;
+
+    private float mContentLeft;
+    private float mContentTop;
+    private float mContentWidth;
+    private float mContentHeight;
+
+    private boolean mHasBounds;
+    private float mBoundLeft;
+    private float mBoundTop;
+    private float mBoundRight;
+    private float mBoundBottom;
+    private float mBoundSlop;
+
+    private boolean mInverseDirty = true;
+    private float mInverseScale = 1;
+    private float mInverseTranslationX;
+    private float mInverseTranslationY;
+
+    private int mGeneration;
+
+    public void setScaleRange(float minScale, float maxScale) {
+        if (minScale <= 0 || maxScale < minScale) {
+            throw new IllegalArgumentException("invalid scale range [" + minScale + ", " + maxScale + "]");
+        }
+        mMinScale = minScale;
+        mMaxScale = maxScale;
+    }
+
+    /**
+     * Sets the untransformed position and size of the content in viewport coordinates.
+     *
+     * @return true if the content to viewport mapping changed
+     */
+    public boolean setContentBounds(float left, float top, float width, float height) {
+        if (left == mContentLeft && top == mContentTop
+                && width == mContentWidth && height == mContentHeight) {
+            return false;
+        }
+        mContentLeft = left;
+        mContentTop = top;
+        mContentWidth = width;
+        mContentHeight = height;
+        onChanged();
+        clampTranslation();
+        return true;
+    }
+
+    /**
+     * Sets the area the scaled content is allowed to move in.
+     * <p>
+     * Content smaller than the area stays inside it, content larger than the area always
+     * covers it. In both cases the content may overshoot by {@code slop} on each side.
+     *
+     * @return true if the transform had to be adjusted to the new bounds
+     */
+    public boolean setScrollBounds(float left, float top, float right, float bottom, float slop) {
+        mHasBounds = true;
+        mBoundLeft = left;
+        mBoundTop = top;
+        mBoundRight = right;
+        mBoundBottom = bottom;
+        mBoundSlop = slop;
+        return clampTranslation();
+    }
+
+    /**
+     * Sets the transform without clamping it. It will be clamped by the next bounds change
+     * or by the next translation / scale write.
+     */
+    public void set(float scale, float translationX, float translationY) {
+        if (scale == mScale && translationX == mTranslationX && translationY == mTranslationY) {
+            return;
+        }
+        mScale = scale;
+        mTranslationX = translationX;
+        mTranslationY = translationY;
+        onChanged();
+    }
+
+    public boolean translateBy(float dx, float dy) {
+        return setTranslation(mTranslationX + dx, mTranslationY + dy);
+    }
+
+    public boolean setTranslation(float translationX, float translationY) {
+        float tx = clampTranslationX(translationX);
+        float ty = clampTranslationY(translationY);
+        if (tx == mTranslationX && ty == mTranslationY) {
+            return false;
+        }
+        mTranslationX = tx;
+        mTranslationY = ty;
+        onChanged();
+        return true;
+    }
+
+    public boolean setTranslationX(float translationX) {
+        return setTranslation(translationX, mTranslationY);
+    }
+
+    public boolean setTranslationY(float translationY) {
+        return setTranslation(mTranslationX, translationY);
+    }
+
+    public boolean scaleBy(float factor, float focusX, float focusY) {
+        return setScale(mScale * factor, focusX, focusY);
+    }
+
+    /**
+     * Scales the content around a focus point given in viewport coordinates, so the content
+     * under the focus stays under it (as far as the scroll bounds allow).
+     */
+    public boolean setScale(float scale, float focusX, float focusY) {
+        float newScale = clampScale(scale);
+        float localX = (focusX - mContentLeft - mTranslationX) / mScale;
+        float localY = (focusY - mContentTop - mTranslationY) / mScale;
+        float tx = focusX - mContentLeft - localX * newScale;
+        float ty = focusY - mContentTop - localY * newScale;
+        float oldScale = mScale;
+        mScale = newScale;
+        tx = clampTranslationX(tx);
+        ty = clampTranslationY(ty);
+        if (newScale == oldScale && tx == mTranslationX && ty == mTranslationY) {
+            return false;
+        }
+        mTranslationX = tx;
+        mTranslationY = ty;
+        onChanged();
+        return true;
+    }
+
+    public float clampScale(float scale) {
+        return Math.max(mMinScale, Math.min(scale, mMaxScale));
+    }
+
+    public float getScale() {
+        return mScale;
+    }
+
+    public float getMinScale() {
+        return mMinScale;
+    }
+
+    public float getMaxScale() {
+        return mMaxScale;
+    }
+
+    public float getTranslationX() {
+        return mTranslationX;
+    }
+
+    public float getTranslationY() {
+        return mTranslationY;
+    }
+
+    public float getContentLeft() {
+        return mContentLeft;
+    }
+
+    public float getContentTop() {
+        return mContentTop;
+    }
+
+    public float getContentWidth() {
+        return mContentWidth;
+    }
+
+    public float getContentHeight() {
+        return mContentHeight;
+    }
+
+    public float getMinTranslationX() {
+        return minTranslation(mContentLeft, mContentWidth * mScale, mBoundLeft, mBoundRight, mBoundSlop);
+    }
+
+    public float getMaxTranslationX() {
+        return maxTranslation(mContentLeft, mContentWidth * mScale, mBoundLeft, mBoundRight, mBoundSlop);
+    }
+
+    public float getMinTranslationY() {
+        return minTranslation(mContentTop, mContentHeight * mScale, mBoundTop, mBoundBottom, mBoundSlop);
+    }
+
+    public float getMaxTranslationY() {
+        return maxTranslation(mContentTop, mContentHeight * mScale, mBoundTop, mBoundBottom, mBoundSlop);
+    }
+
+    /**
+     * Like {@link #getMinTranslationX()} but without the slop, i.e. where the content rests.
+     */
+    public float getRestMinTranslationX() {
+        return minTranslation(mContentLeft, mContentWidth * mScale, mBoundLeft, mBoundRight, 0);
+    }
+
+    public float getRestMaxTranslationX() {
+        return maxTranslation(mContentLeft, mContentWidth * mScale, mBoundLeft, mBoundRight, 0);
+    }
+
+    public float getRestMinTranslationY() {
+        return minTranslation(mContentTop, mContentHeight * mScale, mBoundTop, mBoundBottom, 0);
+    }
+
+    public float getRestMaxTranslationY() {
+        return maxTranslation(mContentTop, mContentHeight * mScale, mBoundTop, mBoundBottom, 0);
+    }
+
+    /**
+     * False until {@link #setScrollBounds} is called, the translation is not clamped before.
+     */
+    public boolean hasScrollBounds() {
+        return mHasBounds;
+    }
+
+    public float getBoundLeft() {
+        return mBoundLeft;
+    }
+
+    public float getBoundTop() {
+        return mBoundTop;
+    }
+
+    public float getBoundRight() {
+        return mBoundRight;
+    }
+
+    public float getBoundBottom() {
+        return mBoundBottom;
+    }
+
+    public float getBoundSlop() {
+        return mBoundSlop;
+    }
+
+    public float clampTranslationX(float translationX) {
+        if (!mHasBounds) {
+            return translationX;
+        }
+        return clamp(translationX, getMinTranslationX(), getMaxTranslationX());
+    }
+
+    public float clampTranslationY(float translationY) {
+        if (!mHasBounds) {
+            return translationY;
+        }
+        return clamp(translationY, getMinTranslationY(), getMaxTranslationY());
+    }
+
+    /**
+     * Maps points from content coordinates to viewport coordinates in place.
+     */
+    public void mapPoints(float[] pts) {
+        float dx = mContentLeft + mTranslationX;
+        float dy = mContentTop + mTranslationY;
+        for (int i = 0; i + 1 < pts.length; i += 2) {
+            pts[i] = dx + pts[i] * mScale;
+            pts[i + 1] = dy + pts[i + 1] * mScale;
+        }
+    }
+
+    /**
+     * Maps points from viewport coordinates to content coordinates in place.
+     */
+    public void invertPoints(float[] pts) {
+        ensureInverse();
+        for (int i = 0; i + 1 < pts.length; i += 2) {
+            pts[i] = mInverseTranslationX + pts[i] * mInverseScale;
+            pts[i + 1] = mInverseTranslationY + pts[i + 1] * mInverseScale;
+        }
+    }
+
+    /**
+     * Writes the content to viewport matrix in {@code android.graphics.Matrix} value order.
+     */
+    public void getValues(float[] values) {
+        writeValues(values, mScale, mContentLeft + mTranslationX, mContentTop + mTranslationY);
+    }
+
+    /**
+     * Writes the viewport to content matrix in {@code android.graphics.Matrix} value order.
+     */
+    public void getInverseValues(float[] values) {
+        ensureInverse();
+        writeValues(values, mInverseScale, mInverseTranslationX, mInverseTranslationY);
+    }
+
+    /**
+     * Returns a counter that changes every time the transform changes.
+     */
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    private boolean clampTranslation() {
+        return setTranslation(mTranslationX, mTranslationY);
+    }
+
+    private static float minTranslation(float contentStart, float contentSize, float boundStart, float boundEnd,
+                                        float slop) {
+        if (contentSize <= boundEnd - boundStart) {
+            return boundStart - slop - contentStart;
+        }
+        return boundEnd - slop - contentStart - contentSize;
+    }
+
+    private static float maxTranslation(float contentStart, float contentSize, float boundStart, float boundEnd,
+                                        float slop) {
+        if (contentSize <= boundEnd - boundStart) {
+            return boundEnd + slop - contentStart - contentSize;
+        }
+        return boundStart + slop - contentStart;
+    }
+
+    private void ensureInverse() {
+        if (mInverseDirty) {
+            mInverseScale = 1 / mScale;
+            mInverseTranslationX = -(mContentLeft + mTranslationX) * mInverseScale;
+            mInverseTranslationY = -(mContentTop + mTranslationY) * mInverseScale;
+            mInverseDirty = false;
+        }
+    }
+
+    private void onChanged() {
+        mInverseDirty = true;
+        mGeneration++;
+    }
+
+    private static void writeValues(float[] values, float scale, float tx, float ty) {
+        values[0] = scale;
+        values[1] = 0;
+        values[2] = tx;
+        values[3] = 0;
+        values[4] = scale;
+        values[5] = ty;
+        values[6] = 0;
+        values[7] = 0;
+        values[8] = 1;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return value < min ? min : value > max ? max : value;
+    }
+}
@@ -0,0 +1,16 @@
+package com.zhanghao.zoomlayout;
+
+import android.graphics.Canvas;
+
+/**
+ * Implemented by a {@link ZoomLayout} child that only draws what is in the viewport, for
+ * example {@link ZoomCanvasLayout}, so a {@link ZoomMinimapView} can show all of it.
+ */
+public interface WholeContentDrawable {
+
+    /**
+     * Draws the child like {@code View.draw()}, including the content outside of the
+     * viewport.
+     */
+    void drawWholeContent(Canvas canvas);
+}
@@ -0,0 +1,246 @@
+package com.zhanghao.zoomlayout;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Canvas for many positioned children, meant to be the child of a {@link ZoomLayout}.
+ * <p>
+ * Every child is placed at {@link LayoutParams#x}, {@link LayoutParams#y} in canvas
+ * coordinates, and the canvas is as large as the area its children cover. The children are
+ * kept in a {@link QuadTree}, so only the children intersecting the viewport are drawn and
+ * touches are routed to the child under the finger without walking all of them. Draw and
+ * hit-test cost depend on the number of visible children, not the total.
+ * {@link #drawWholeContent(Canvas)} draws all of them, for a {@link ZoomMinimapView}.
+ * <p>
+ * Children are hit-tested by their layout bounds, their own transformations are ignored.
+ */
+public class ZoomCanvasLayout extends ViewGroup implements ViewportAware, WholeContentDrawable {
+
+    private final CulledChildren mChildren = new CulledChildren();
+    private boolean mHasViewport;
+    private final RectF mViewport = new RectF();
+    private final float[] mViewportPoints = new float[4];
+    private View mTouchTarget;
+
+    public ZoomCanvasLayout(Context context) {
+        this(context, null);
+    }
+
+    public ZoomCanvasLayout(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public ZoomCanvasLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int right = 0;
+        int bottom = 0;
+        final int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            child.measure(childMeasureSpec(lp.width), childMeasureSpec(lp.height));
+            right = Math.max(right, lp.x + child.getMeasuredWidth());
+            bottom = Math.max(bottom, lp.y + child.getMeasuredHeight());
+        }
+        // like a scroll view's content the canvas is as large as its children, unless forced
+        setMeasuredDimension(
+                MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.EXACTLY
+                        ? MeasureSpec.getSize(widthMeasureSpec) : right,
+                MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.EXACTLY
+                        ? MeasureSpec.getSize(heightMeasureSpec) : bottom);
+    }
+
+    private static int childMeasureSpec(int size) {
+        if (size >= 0) {
+            return MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY);
+        }
+        return MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        final int childCount = getChildCount();
+        mChildren.reset(childCount, r - l, b - t);
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            int right = lp.x + child.getMeasuredWidth();
+            int bottom = lp.y + child.getMeasuredHeight();
+            child.layout(lp.x, lp.y, right, bottom);
+            mChildren.insert(i, lp.x, lp.y, right, bottom);
+        }
+        updateVisibleChildren(true);
+    }
+
+    @Override
+    public void onViewportChanged(ViewportTransform transform, int viewportWidth, int viewportHeight) {
+        float[] pts = mViewportPoints;
+        pts[0] = 0;
+        pts[1] = 0;
+        pts[2] = viewportWidth;
+        pts[3] = viewportHeight;
+        transform.invertPoints(pts);
+        mViewport.set(pts[0], pts[1], pts[2], pts[3]);
+        mHasViewport = true;
+        updateVisibleChildren(false);
+    }
+
+    /**
+     * Queries the children intersecting the viewport and redraws if they changed.
+     */
+    private void updateVisibleChildren(boolean force) {
+        if (!mHasViewport) {
+            mViewport.set(0, 0, getWidth(), getHeight());
+        }
+        if (mChildren.cull(mViewport.left, mViewport.top, mViewport.right, mViewport.bottom, force)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Returns the number of children currently drawn.
+     */
+    public int getVisibleChildCount() {
+        return mChildren.getVisibleCount();
+    }
+
+    @Override
+    public void drawWholeContent(Canvas canvas) {
+        mChildren.setWholeContent(true);
+        try {
+            draw(canvas);
+        } finally {
+            mChildren.setWholeContent(false);
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        final long drawingTime = getDrawingTime();
+        final int childCount = getChildCount();
+        for (int i = 0, count = mChildren.getDrawCount(); i < count; i++) {
+            int index = mChildren.getDrawIndex(i);
+            if (index >= childCount) {
+                // children were removed, the next layout rebuilds the index
+                break;
+            }
+            View child = getChildAt(index);
+            if (child.getVisibility() == VISIBLE) {
+                drawChild(canvas, child, drawingTime);
+            }
+        }
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        int action = ev.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            mTouchTarget = findTouchTarget(ev.getX(), ev.getY());
+        }
+        if (mTouchTarget != null && mTouchTarget.getParent() != this) {
+            // removed while touched
+            mTouchTarget = null;
+        }
+        boolean handled = false;
+        if (mTouchTarget != null) {
+            float offsetX = getScrollX() - mTouchTarget.getLeft();
+            float offsetY = getScrollY() - mTouchTarget.getTop();
+            ev.offsetLocation(offsetX, offsetY);
+            handled = mTouchTarget.dispatchTouchEvent(ev);
+            ev.offsetLocation(-offsetX, -offsetY);
+            if (!handled && action == MotionEvent.ACTION_DOWN) {
+                mTouchTarget = null;
+            }
+        }
+        if (mTouchTarget == null && !handled) {
+            handled = onTouchEvent(ev);
+        }
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            mTouchTarget = null;
+        }
+        return handled;
+    }
+
+    private View findTouchTarget(float x, float y) {
+        int index = mChildren.findTopmost(x + getScrollX(), y + getScrollY());
+        if (index < 0 || index >= getChildCount()) {
+            return null;
+        }
+        View child = getChildAt(index);
+        return child.getVisibility() == VISIBLE ? child : null;
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new LayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+        return new LayoutParams(p);
+    }
+
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
+    }
+
+    public static class LayoutParams extends ViewGroup.LayoutParams {
+        /**
+         * Left of the child in canvas coordinates.
+         */
+        public int x;
+        /**
+         * Top of the child in canvas coordinates.
+         */
+        public int y;
+
+        public LayoutParams(Context c, AttributeSet attrs) {
+            super(c, attrs);
+        }
+
+        public LayoutParams(int width, int height) {
+            super(width, height);
+        }
+
+        public LayoutParams(int width, int height, int x, int y) {
+            super(width, height);
+            this.x = x;
+            this.y = y;
+        }
+
+        public LayoutParams(ViewGroup.LayoutParams source) {
+            super(source);
+            if (source instanceof LayoutParams) {
+                x = ((LayoutParams) source).x;
+                y = ((LayoutParams) source).y;
+            }
+        }
+    }
+}
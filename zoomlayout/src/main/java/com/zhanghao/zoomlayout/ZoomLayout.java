@@ -2,17 +2,26 @@ package com.zhanghao.zoomlayout;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
+import android.animation.TimeInterpolator;
 import android.animation.ValueAnimator;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Picture;
+import android.graphics.Rect;
 import android.graphics.RectF;
+import android.os.Build;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
@@ -20,49 +29,104 @@ import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.view.animation.AccelerateInterpolator;
-import android.view.animation.DecelerateInterpolator;
+import android.view.animation.AnimationUtils;
 import android.widget.EdgeEffect;
 import android.widget.FrameLayout;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+
 public class ZoomLayout extends FrameLayout implements ScaleGestureDetector.OnScaleGestureListener {
     private static final String TAG = "ZoomLayout";
-    private static final float MIN_SCALE_FACTOR = 0.5f;
-    private static final float MAX_SCALE_FACTOR = 4f;
-    private static final float INCREASE_SCALE_FACTOR = 0.5f;
+    private static final boolean DEBUG = false;
     private static final int SCALE_ANIM_DURATION = 400;
-    private static final int FLING_ANIM_DURATION = 500;
     private static final float MAX_FLING_DISTANCE = 100;
     private static final int PER_SECONDS = 1000;
     private static final int INVALID_POINTER = -1;
     private static final int SCROLL_EDGE_LENGTH_DP = 100;
-    private static final int VERTICAL = 1 << 1;
-    private static final int HORIZONTAL = 1 << 2;
-    private static final float VELOCITY_PERCENT = 0.2f;
-    private static final float MIN_FLING_VELOCITY = 10f;
-    private float mScaleFactor = 1;
+    private static final int MAX_SNAPSHOT_SCREENS = 2;
+    private static final int PREFETCH_LOOKAHEAD_MS = 300;
+    private static final int PREFETCH_INTERVAL_MS = 100;
+    private static final int PREDICTION_MS = 8;
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 5000;
+    private static final int MAX_PREDICTION_DP = 24;
+    // Build.VERSION_CODES.R, not available at the compile sdk
+    private static final int API_UNBUFFERED_DISPATCH = 30;
+    private static Method sRequestUnbufferedDispatch;
+    private static boolean sUnbufferedDispatchLookedUp = false;
     private int mScaleTouchSlop;
     private VelocityTracker mVelocityTracker;
     private int mMaxFlingVelocity;
-    private int mTouchSlop;
-    private float mLastDownX;
-    private float mLastDownY;
-    private float mDownX;
-    private float mDownY;
-    private boolean mIsScrolling = false;
-    private boolean mIsScaling = false;
-    private boolean mIsFlinging = false;
+    private boolean mIsTouching = false;
+    private boolean mCoalesceTouchInput = false;
+    private boolean mCoalescedMovePending = false;
+    private float mPendingDx;
+    private float mPendingDy;
     private ScaleGestureDetector mScaleGestureDetector;
     private GestureDetector mGestureDetector;
-    private ValueAnimator mAnimTranX;
-    private ValueAnimator mAnimTranY;
+    private final FlingScroller mScroller = new FlingScroller();
+    private ValueAnimator mAnimScale;
+    private final InteractionState mInteractionState = new InteractionState();
+    private long mIdleTimeout = DEFAULT_IDLE_TIMEOUT_MS;
     private RectF mChildBound;
     private RectF mScrollBound;
+    private int mBoundChildWidth = -1;
+    private int mBoundChildHeight = -1;
+    private int mBoundWidth = -1;
+    private int mBoundHeight = -1;
+    private int mBoundChildLeft;
+    private int mBoundChildTop;
     private int mScrollEdgeLength;
-    private float mMaxScrollUp;
-    private float mMaxScrollDown;
-    private float mMaxScrollLeft;
-    private float mMaxScrollRight;
+    private ViewportTransform mTransform = new ViewportTransform();
+    private final GestureCore mGestures = new GestureCore(mTransform, mScroller);
+    private ZoomTransformGroup mTransformGroup;
+    private final TransformTracker mTransformTracker = new TransformTracker();
+    private final GestureFrameMonitor mFrameMonitor = new GestureFrameMonitor();
+    private GestureSnapshot mGestureSnapshot;
+    private boolean mGestureSnapshotEnabled = false;
+    private boolean mMovingLayerEnabled = false;
+    private int mMaxLayerSize;
+    private final ChildPicture mChildPicture = new ChildPicture();
+    private boolean mChildRecordingEnabled = false;
+    private boolean mApplyingTransform = false;
+    private LevelOfDetailRenderer mLevelOfDetailRenderer;
+    private boolean mProgressiveRenderingEnabled = false;
+    private final ArrayList<OnViewportChangeListener> mViewportListeners = new ArrayList<>();
+    private final ViewportSnapshot mViewportSnapshot = new ViewportSnapshot();
+    private ZoomMinimapView mMinimapView;
+    private GestureTraceRecorder mTraceRecorder;
+    private boolean mLowLatencyInput = false;
+    private final InputPredictor mInputPredictor = new InputPredictor();
+    private final float[] mPredicted = new float[2];
+    private float mPredictionOffsetX;
+    private float mPredictionOffsetY;
+    private int mMaxPredictionDistance;
+    private View mTouchTarget;
+    private final DisallowInterceptFlag mDisallowIntercept = new DisallowInterceptFlag(
+            new DisallowInterceptFlag.Target() {
+                @Override
+                public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+                    ZoomLayout.super.requestDisallowInterceptTouchEvent(disallowIntercept);
+                }
+            });
+    private boolean mChildOwnsDrag = false;
+    private float mChildDownX;
+    private float mChildDownY;
+    private final Matrix mTouchToChild = new Matrix();
+    private final Matrix mChildToTouch = new Matrix();
+    private final float[] mTouchToChildValues = new float[9];
+    private final float[] mMatrixValues = new float[9];
+    private boolean mTouchMatrixValid = false;
+    private final int[] mNestedConsumed = new int[2];
+    private final int[] mNestedOffset = new int[2];
+    private int mNestedShiftX;
+    private int mNestedShiftY;
+    private final RectF mPrefetchRect = new RectF();
+    private boolean mPrefetchIssued = false;
+    private long mLastPrefetchTime;
 
 
     public ZoomLayout(Context context, AttributeSet attrs) {
@@ -78,15 +142,32 @@ public class ZoomLayout extends FrameLayout implements ScaleGestureDetector.OnSc
     private void init(Context context) {
         ViewConfiguration vc = ViewConfiguration.get(context);
         mScaleTouchSlop = vc.getScaledTouchSlop();
-        mTouchSlop = vc.getScaledTouchSlop();
+        mGestures.setTouchSlop(vc.getScaledTouchSlop());
         mScaleGestureDetector = new ScaleGestureDetector(context, this);
         mGestureDetector = new GestureDetector(context, mSimpleOnGestureListener);
         mVelocityTracker = VelocityTracker.obtain();
+        setNestedScrollingEnabled(true);
         mMaxFlingVelocity = vc.getScaledMaximumFlingVelocity();
+        mGestures.setMaxFlingVelocity(mMaxFlingVelocity);
         mChildBound = new RectF();
         mScrollBound = new RectF();
         mScrollEdgeLength = DensityUtil.dp2px(context, SCROLL_EDGE_LENGTH_DP);
-        Log.d(TAG, "init: mMaxFlingVelocity " + mMaxFlingVelocity);
+        mMaxPredictionDistance = DensityUtil.dp2px(context, MAX_PREDICTION_DP);
+        mTransform.setScaleRange(GestureCore.MIN_SCALE, GestureCore.MAX_SCALE);
+        DisplayMetrics dm = context.getResources().getDisplayMetrics();
+        mGestureSnapshot = new GestureSnapshot(dm.widthPixels * dm.heightPixels * MAX_SNAPSHOT_SCREENS);
+        if (DEBUG) {
+            Log.d(TAG, "init: mMaxFlingVelocity " + mMaxFlingVelocity);
+        }
+    }
+
+    private static ValueAnimator createAnimator(int duration, TimeInterpolator interpolator,
+                                                ValueAnimator.AnimatorUpdateListener listener) {
+        ValueAnimator animator = ValueAnimator.ofFloat(0, 1);
+        animator.setDuration(duration);
+        animator.setInterpolator(interpolator);
+        animator.addUpdateListener(listener);
+        return animator;
     }
 
     private void checkDirectChildCount() {
@@ -119,35 +200,101 @@ public class ZoomLayout extends FrameLayout implements ScaleGestureDetector.OnSc
         super.addView(child, index, params);
     }
 
+    /**
+     * Measures the single child once. A child matching a parent that is not exactly sized is
+     * measured a second time only if this layout ended up larger than the child, e.g. because
+     * of its minimum size, so the child fills it.
+     */
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        final int childCount = getChildCount();
-        for (int i = 0; i < childCount; i++) {
-            measureChild(getChildAt(i), widthMeasureSpec, heightMeasureSpec);
+        View child = child();
+        int width = 0;
+        int height = 0;
+        int childState = 0;
+        if (child != null && child.getVisibility() != GONE) {
+            measureChildWithMargins(child, widthMeasureSpec, 0, heightMeasureSpec, 0);
+            MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
+            width = child.getMeasuredWidth() + lp.leftMargin + lp.rightMargin;
+            height = child.getMeasuredHeight() + lp.topMargin + lp.bottomMargin;
+            childState = child.getMeasuredState();
         }
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        width = Math.max(width + getPaddingLeft() + getPaddingRight(), getSuggestedMinimumWidth());
+        height = Math.max(height + getPaddingTop() + getPaddingBottom(), getSuggestedMinimumHeight());
+        setMeasuredDimension(resolveSizeAndState(width, widthMeasureSpec, childState),
+                resolveSizeAndState(height, heightMeasureSpec, childState << MEASURED_HEIGHT_STATE_SHIFT));
+        if (child != null && child.getVisibility() != GONE) {
+            remeasureMatchParentChildIfNeeded(child, widthMeasureSpec, heightMeasureSpec);
+        }
+    }
+
+    private void remeasureMatchParentChildIfNeeded(View child, int widthMeasureSpec, int heightMeasureSpec) {
+        MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
+        boolean matchWidth = lp.width == LayoutParams.MATCH_PARENT
+                && MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.EXACTLY;
+        boolean matchHeight = lp.height == LayoutParams.MATCH_PARENT
+                && MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.EXACTLY;
+        int width = Math.max(0, getMeasuredWidth() - getPaddingLeft() - getPaddingRight()
+                - lp.leftMargin - lp.rightMargin);
+        int height = Math.max(0, getMeasuredHeight() - getPaddingTop() - getPaddingBottom()
+                - lp.topMargin - lp.bottomMargin);
+        // usually this layout wraps the child, which then already has the final size
+        if ((!matchWidth || child.getMeasuredWidth() == width)
+                && (!matchHeight || child.getMeasuredHeight() == height)) {
+            return;
+        }
+        int childWidthSpec = matchWidth
+                ? MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY)
+                : getChildMeasureSpec(widthMeasureSpec,
+                getPaddingLeft() + getPaddingRight() + lp.leftMargin + lp.rightMargin, lp.width);
+        int childHeightSpec = matchHeight
+                ? MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY)
+                : getChildMeasureSpec(heightMeasureSpec,
+                getPaddingTop() + getPaddingBottom() + lp.topMargin + lp.bottomMargin, lp.height);
+        child.measure(childWidthSpec, childHeightSpec);
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         super.onLayout(changed, l, t, r, b);
+        updateBoundsIfNeeded(false);
+    }
+
+    private void updateBoundsIfNeeded(boolean force) {
         View child = child();
+        if (child == null) {
+            return;
+        }
         int childMeasureWidth = child.getMeasuredWidth();
         int childMeasureHeight = child.getMeasuredHeight();
         int width = getMeasuredWidth();
         int height = getMeasuredHeight();
+        // the bounds only depend on these sizes and the child position, the scale is applied
+        // by the transform when it clamps
+        if (!force && childMeasureWidth == mBoundChildWidth && childMeasureHeight == mBoundChildHeight
+                && width == mBoundWidth && height == mBoundHeight
+                && child.getLeft() == mBoundChildLeft && child.getTop() == mBoundChildTop) {
+            return;
+        }
+        mBoundChildWidth = childMeasureWidth;
+        mBoundChildHeight = childMeasureHeight;
+        mBoundWidth = width;
+        mBoundHeight = height;
+        mBoundChildLeft = child.getLeft();
+        mBoundChildTop = child.getTop();
         setChildBound(childMeasureWidth, childMeasureHeight);
         setScrollBound(width, height);
         expandScrollBoundIfNeeded();
-        initialMaxScrollParams();
+        updateTransformBounds(child);
     }
 
-    private void initialMaxScrollParams() {
-        View child = child();
-        mMaxScrollUp = mScrollBound.top - child.getTop();
-        mMaxScrollDown = mScrollBound.bottom - child.getBottom();
-        mMaxScrollLeft = mScrollBound.left - child.getLeft();
-        mMaxScrollRight = mScrollBound.right - child.getRight();
+    private void updateTransformBounds(View child) {
+        boolean changed = mTransform.setContentBounds(child.getLeft(), child.getTop(),
+                child.getMeasuredWidth(), child.getMeasuredHeight());
+        changed |= mTransform.setScrollBounds(mScrollBound.left, mScrollBound.top,
+                mScrollBound.right, mScrollBound.bottom, mScrollEdgeLength);
+        if (changed) {
+            invalidateTransform();
+        }
     }
 
     private void setChildBound(int childWidth, int childHeight) {
@@ -168,338 +315,1193 @@ public class ZoomLayout extends FrameLayout implements ScaleGestureDetector.OnSc
         if (mChildBound.width() > mScrollBound.width() || mChildBound.height() > mScrollBound.height()) {
             mScrollBound.set(mChildBound);
         }
-        mScrollBound.left = mScrollBound.left - mScrollEdgeLength;
-        mScrollBound.top = mScrollBound.top - mScrollEdgeLength;
-        mScrollBound.right = mScrollBound.right + mScrollEdgeLength;
-        mScrollBound.bottom = mScrollBound.bottom + mScrollEdgeLength;
-        Log.d(TAG, "expandScrollBoundIfNeeded: " + mScrollBound.toString());
+        if (DEBUG) {
+            Log.d(TAG, "expandScrollBoundIfNeeded: " + mScrollBound.toString());
+        }
     }
 
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
         int action = ev.getActionMasked();
+        if (isInputOwnedByOtherMember()) {
+            // another member of the group is being touched
+            return false;
+        }
         switch (action) {
             case MotionEvent.ACTION_DOWN: {
-                float x = ev.getX();
-                float y = ev.getY();
-                mLastDownX = x;
-                mLastDownY = y;
-                break;
+                if (mTransformGroup != null) {
+                    mTransformGroup.claimInput(this);
+                }
+                mGestures.down(ev.getX(), ev.getY());
+                mIsTouching = true;
+                mChildOwnsDrag = false;
+                // a touch that stops the content is not a tap on the child
+                return !mScroller.isFinished() || isScaleAnimating();
             }
             case MotionEvent.ACTION_MOVE: {
-                float x = ev.getX();
-                float y = ev.getY();
-                return interceptScrollEventIfNeeded(x, y)
-                        || interceptScaleEventIfNeeded(ev);
+                if (interceptScaleEventIfNeeded(ev)) {
+                    return true;
+                }
+                if (mChildOwnsDrag || !interceptScrollEventIfNeeded(ev.getX(), ev.getY())) {
+                    return false;
+                }
+                // past the slop the drag is ours, unless the child can scroll that way itself
+                mChildOwnsDrag = canChildScroll(ev.getX() - mGestures.getDownX(), ev.getY() - mGestures.getDownY());
+                if (!mChildOwnsDrag) {
+                    // the slop was applied here, onTouchEvent() must not wait for it again
+                    startDrag();
+                }
+                return !mChildOwnsDrag;
             }
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mIsTouching = false;
+                break;
         }
         return false;
     }
 
+    /**
+     * Routes touches to the child itself instead of relying on the framework's transformed
+     * dispatch, with the viewport to child mapping cached per applied transform.
+     * <p>
+     * The child receives taps and long presses. This layout takes the gesture, cancelling it
+     * for the child, when
+     * <ul>
+     * <li>the touch lands while the content is flung or animated,</li>
+     * <li>a second finger is put down far enough for a pinch,</li>
+     * <li>a drag passes the touch slop and no view under the finger can scroll that way.</li>
+     * </ul>
+     * A child calling {@link #requestDisallowInterceptTouchEvent(boolean)} keeps the gesture.
+     * <p>
+     * Like the framework, events are dropped while the window is obscured if this layout
+     * filters touches when obscured; the child applies its own filter when it dispatches.
+     * Events targeted at the accessibility focused view get no special routing, the
+     * framework does that through hidden API.
+     */
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        if (!onFilterTouchEventForSecurity(ev)) {
+            return false;
+        }
+        int action = ev.getActionMasked();
+        if (mTraceRecorder != null) {
+            mTraceRecorder.record(ev, getWidth(), getHeight(), mGestures);
+        }
+        if (action == MotionEvent.ACTION_DOWN) {
+            mTouchTarget = null;
+            mDisallowIntercept.reset();
+            mInputPredictor.reset();
+            mPredictionOffsetX = 0;
+            mPredictionOffsetY = 0;
+            if (mLowLatencyInput) {
+                requestUnbufferedDispatchIfSupported(ev);
+            }
+        }
+        View child = child();
+        if (mTouchTarget != null && mTouchTarget != child) {
+            // removed while touched
+            mTouchTarget = null;
+        }
+        boolean intercepted;
+        if (action == MotionEvent.ACTION_DOWN || mTouchTarget != null) {
+            intercepted = !mDisallowIntercept.isSet() && onInterceptTouchEvent(ev);
+        } else {
+            // no child is part of this gesture
+            intercepted = true;
+        }
+        boolean handled;
+        if (intercepted && mTouchTarget != null) {
+            // this cancels the child's pending click and long press
+            int oldAction = ev.getAction();
+            ev.setAction(MotionEvent.ACTION_CANCEL);
+            dispatchToChild(ev, mTouchTarget);
+            ev.setAction(oldAction);
+            mTouchTarget = null;
+            handled = true;
+        } else if (!intercepted && mTouchTarget != null) {
+            handled = dispatchToChild(ev, mTouchTarget);
+        } else if (!intercepted && action == MotionEvent.ACTION_DOWN && isTouchInChild(ev, child)
+                && dispatchToChild(ev, child)) {
+            mTouchTarget = child;
+            handled = true;
+        } else {
+            handled = onTouchEvent(ev);
+        }
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            mTouchTarget = null;
+            mDisallowIntercept.reset();
+        }
+        return handled;
+    }
+
+    private boolean dispatchToChild(MotionEvent ev, View child) {
+        ensureTouchMatrix();
+        // mapped in place and back, the transform round trip is exact enough for a touch
+        // and saves obtaining a copy per event
+        ev.offsetLocation(getScrollX(), getScrollY());
+        ev.transform(mTouchToChild);
+        boolean handled = child.dispatchTouchEvent(ev);
+        ev.transform(mChildToTouch);
+        ev.offsetLocation(-getScrollX(), -getScrollY());
+        return handled;
+    }
+
+    private boolean isTouchInChild(MotionEvent ev, View child) {
+        if (child == null || child.getVisibility() != VISIBLE) {
+            return false;
+        }
+        ensureTouchMatrix();
+        float[] m = mTouchToChildValues;
+        mChildDownX = (ev.getX() + getScrollX()) * m[0] + m[2];
+        mChildDownY = (ev.getY() + getScrollY()) * m[4] + m[5];
+        return mChildDownX >= 0 && mChildDownX < child.getWidth()
+                && mChildDownY >= 0 && mChildDownY < child.getHeight();
+    }
+
+    /**
+     * Caches the mapping of the transform that is currently applied to the child.
+     */
+    private void updateTouchMatrix() {
+        mTransform.getInverseValues(mTouchToChildValues);
+        mTouchToChild.setValues(mTouchToChildValues);
+        mTransform.getValues(mMatrixValues);
+        mChildToTouch.setValues(mMatrixValues);
+        mTouchMatrixValid = true;
+    }
+
+    private void ensureTouchMatrix() {
+        if (!mTouchMatrixValid) {
+            updateTouchMatrix();
+        }
+    }
+
+    /**
+     * Whether the child or a view inside it under the down position can scroll along the
+     * dominant axis of the drag {@code (dx, dy)}.
+     */
+    private boolean canChildScroll(float dx, float dy) {
+        View child = mTouchTarget;
+        if (child == null) {
+            return false;
+        }
+        boolean horizontal = Math.abs(dx) > Math.abs(dy);
+        int direction = (horizontal ? dx : dy) > 0 ? -1 : 1;
+        return canScroll(child, horizontal, direction, mChildDownX, mChildDownY);
+    }
+
+    /**
+     * @param x position in {@code v}'s coordinates, the transformations of descendants are
+     *          ignored
+     */
+    private static boolean canScroll(View v, boolean horizontal, int direction, float x, float y) {
+        if (v instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) v;
+            float localX = x + v.getScrollX();
+            float localY = y + v.getScrollY();
+            for (int i = group.getChildCount() - 1; i >= 0; i--) {
+                View child = group.getChildAt(i);
+                if (child.getVisibility() == VISIBLE
+                        && localX >= child.getLeft() && localX < child.getRight()
+                        && localY >= child.getTop() && localY < child.getBottom()
+                        && canScroll(child, horizontal, direction,
+                        localX - child.getLeft(), localY - child.getTop())) {
+                    return true;
+                }
+            }
+        }
+        return horizontal ? v.canScrollHorizontally(direction) : v.canScrollVertically(direction);
+    }
+
+    @Override
+    public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        mDisallowIntercept.request(disallowIntercept);
+    }
+
     private boolean interceptScaleEventIfNeeded(MotionEvent event) {
-        int ss = calculateScaleSlop(event);
+        float ss = calculateScaleSlop(event);
         return ss >= mScaleTouchSlop;
     }
 
     private boolean interceptScrollEventIfNeeded(float moveX, float moveY) {
-        float deltaX = moveX - mLastDownX;
-        float deltaY = moveY - mLastDownY;
-        return Math.abs(deltaX) > mTouchSlop || Math.abs(deltaY) > mTouchSlop;
+        return mGestures.isPastTouchSlop(moveX, moveY);
     }
 
-    private int calculateScaleSlop(MotionEvent ev) {
-        int pCount = ev.getPointerCount();
-        if (pCount == 2) {
-            int x1 = (int) ev.getX(0);
-            int y1 = (int) ev.getY(0);
-            int x2 = (int) ev.getX(1);
-            int y2 = (int) ev.getY(1);
-            return calculateLengthBetween2Point(x1, y1, x2, y2);
+    private float calculateScaleSlop(MotionEvent ev) {
+        if (ev.getPointerCount() == 2) {
+            return GestureMath.distance(ev.getX(0), ev.getY(0), ev.getX(1), ev.getY(1));
         }
         return -1;
     }
 
-    private int calculateLengthBetween2Point(int x1, int y1, int x2, int y2) {
-        return (int) Math.sqrt(Math.pow((x1 - x2), 2) + Math.pow((y1 - y2), 2));
-    }
-
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN
+                && mTransformGroup != null && !mTransformGroup.claimInput(this)) {
+            // another member of the group is being touched
+            return false;
+        }
         mVelocityTracker.addMovement(event);
         mScaleGestureDetector.onTouchEvent(event);
         switch (event.getActionMasked()) {
             case MotionEvent.ACTION_DOWN: {
                 clearAllAnimationsIfNeeded();
-                float x = event.getX();
-                float y = event.getY();
-                mDownX = x;
-                mDownY = y;
-                mLastDownX = x;
-                mLastDownY = y;
+                cancelCoalescedMove();
+                cancelSharpRenderIfNeeded();
+                mIsTouching = true;
+                mGestures.down(event.getX(), event.getY());
+                updateInteractionState();
                 break;
             }
             case MotionEvent.ACTION_MOVE: {
                 float x = event.getX();
                 float y = event.getY();
-                float dx = x - mLastDownX;
-                float dy = y - mLastDownY;
-                performChildTranslationIfNeeded(dx, dy);
-                mLastDownX = x;
-                mLastDownY = y;
+                if (mGestures.shouldStartDrag(x, y)) {
+                    startDrag();
+                }
+                mNestedShiftX = 0;
+                mNestedShiftY = 0;
+                if (mGestures.isDragging()) {
+                    mFrameMonitor.onInput(event.getEventTime());
+                    float dx = x - mGestures.getLastX();
+                    float dy = y - mGestures.getLastY();
+                    if (hasNestedScrollingParent()) {
+                        performNestedTranslationIfNeeded(dx, dy);
+                    } else if (mLowLatencyInput) {
+                        performPredictedTranslationIfNeeded(event.getEventTime(), x, y);
+                    } else {
+                        performChildTranslationIfNeeded(dx, dy);
+                    }
+                    prefetchDragTargetIfNeeded(event.getEventTime());
+                }
+                // when a nested scrolling parent moved this layout, the next event arrives
+                // shifted by the same amount
+                mGestures.setLastPosition(x - mNestedShiftX, y - mNestedShiftY);
                 break;
             }
             case MotionEvent.ACTION_UP: {
-                if (mIsScaling) {
-                    mIsScaling = false;
-                    break;
-                }
-                mVelocityTracker.computeCurrentVelocity(PER_SECONDS, mMaxFlingVelocity);
-                float velocityX = mVelocityTracker.getXVelocity();
-                float velocityY = mVelocityTracker.getYVelocity();
-                float tempVx = Math.abs(velocityX), tempVy = Math.abs(velocityY);
-                if (tempVx < MIN_FLING_VELOCITY && tempVy < MIN_FLING_VELOCITY) {
-                    break;
-                }
-                tempVx = tempVx > mMaxFlingVelocity ? mMaxFlingVelocity : tempVx;
-                tempVy = tempVy > mMaxFlingVelocity ? mMaxFlingVelocity : tempVy;
-                velocityX = velocityX < 0 ? -tempVx : tempVx;
-                velocityY = velocityY < 0 ? -tempVy : tempVy;
-                Log.d(TAG, "onTouchEvent: velocityX " + velocityX);
-                Log.d(TAG, "onTouchEvent: velocityY " + velocityY);
-                clearAllAnimationsIfNeeded();
-                performChildFlingAnimationIfNeeded(velocityX, velocityY);
+                flushCoalescedMove();
+                clearPrediction();
+                mFrameMonitor.end(GestureFrameStats.GESTURE_PAN);
+                mIsTouching = false;
+                performChildReleaseIfNeeded();
+                stopNestedScroll();
+                onGestureEnded();
+                break;
+            }
+            case MotionEvent.ACTION_CANCEL: {
+                clearPrediction();
+                mFrameMonitor.end(GestureFrameStats.GESTURE_PAN);
+                mIsTouching = false;
+                mGestures.cancel();
+                stopNestedScroll();
+                onGestureEnded();
+                break;
             }
         }
         mGestureDetector.onTouchEvent(event);
         return true;
     }
 
-    private void clearAllAnimationsIfNeeded() {
-        if (mAnimTranX != null) {
-            if (mAnimTranX.isStarted() || mAnimTranX.isRunning()) {
-                mAnimTranX.cancel();
+    private void startDrag() {
+        mGestures.startDrag();
+        mFrameMonitor.begin(GestureFrameStats.GESTURE_PAN);
+        updateInteractionState();
+        startNestedScroll(SCROLL_AXIS_HORIZONTAL | SCROLL_AXIS_VERTICAL);
+    }
+
+    /**
+     * When enabled touch input is asked to be delivered as soon as it arrives instead of once
+     * per frame (Android 11 and newer), moves are applied right away even with
+     * {@link #setTouchInputCoalescingEnabled(boolean) coalescing}, and the content is moved
+     * slightly ahead of the finger by extrapolating its recent velocity. Disabled by default.
+     * <p>
+     * Unbuffered input costs more event processing per frame, enable it where the content
+     * visibly has to stick to the finger.
+     */
+    public void setLowLatencyInputEnabled(boolean enabled) {
+        if (enabled) {
+            flushCoalescedMove();
+        } else {
+            clearPrediction();
+        }
+        mLowLatencyInput = enabled;
+    }
+
+    private void requestUnbufferedDispatchIfSupported(MotionEvent event) {
+        if (Build.VERSION.SDK_INT < API_UNBUFFERED_DISPATCH) {
+            // input stays batched to vsync, the prediction still applies
+            return;
+        }
+        if (!sUnbufferedDispatchLookedUp) {
+            sUnbufferedDispatchLookedUp = true;
+            try {
+                sRequestUnbufferedDispatch = View.class.getMethod("requestUnbufferedDispatch", MotionEvent.class);
+            } catch (NoSuchMethodException e) {
+                Log.w(TAG, "requestUnbufferedDispatch not available", e);
             }
-            mAnimTranX = null;
         }
-        if (mAnimTranY != null) {
-            if (mAnimTranY.isStarted() || mAnimTranY.isRunning()) {
-                mAnimTranY.cancel();
+        if (sRequestUnbufferedDispatch == null) {
+            return;
+        }
+        try {
+            sRequestUnbufferedDispatch.invoke(this, event);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            Log.w(TAG, "requestUnbufferedDispatch failed", e);
+            sRequestUnbufferedDispatch = null;
+        }
+    }
+
+    /**
+     * Moves the content to where the finger is predicted to be {@link #PREDICTION_MS} after
+     * this event. The content stays offset by the prediction until the next move replaces it.
+     */
+    private void performPredictedTranslationIfNeeded(long eventTime, float x, float y) {
+        mInputPredictor.add(eventTime, x, y);
+        mInputPredictor.predict(PREDICTION_MS, mMaxPredictionDistance, mPredicted);
+        float offsetX = mPredicted[0] - x;
+        float offsetY = mPredicted[1] - y;
+        performChildTranslationIfNeeded(x - mGestures.getLastX() + offsetX - mPredictionOffsetX,
+                y - mGestures.getLastY() + offsetY - mPredictionOffsetY);
+        mPredictionOffsetX = offsetX;
+        mPredictionOffsetY = offsetY;
+    }
+
+    /**
+     * Takes the predicted part back out of the translation, so a release or pinch starts from
+     * where the finger really is.
+     */
+    private void clearPrediction() {
+        if (mPredictionOffsetX != 0 || mPredictionOffsetY != 0) {
+            if (mTransform.translateBy(-mPredictionOffsetX, -mPredictionOffsetY)) {
+                invalidateTransform();
             }
-            mAnimTranX = null;
+            mPredictionOffsetX = 0;
+            mPredictionOffsetY = 0;
         }
+        mInputPredictor.reset();
     }
 
-    private void performChildTranslationIfNeeded(float dx, float dy) {
-        if (!mIsScaling && !mIsFlinging) {
-            if (Math.abs(dx) < mTouchSlop && Math.abs(dy) < mTouchSlop) {
-                return;
+    private void performChildReleaseIfNeeded() {
+        mVelocityTracker.computeCurrentVelocity(PER_SECONDS, mMaxFlingVelocity);
+        float velocityX = mVelocityTracker.getXVelocity();
+        float velocityY = mVelocityTracker.getYVelocity();
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        int release;
+        if (mGestures.isFling(velocityX, velocityY)) {
+            if (DEBUG) {
+                Log.d(TAG, "onTouchEvent: velocityX " + velocityX + " velocityY " + velocityY);
             }
-            View child = child();
-            float originTx = child.getTranslationX();
-            float originTy = child.getTranslationY();
-            float currentTx = calculateTranslation(child, originTx, dx, HORIZONTAL);
-            float currentTy = calculateTranslation(child, originTy, dy, VERTICAL);
-            child.setTranslationX(currentTx);
-            child.setTranslationY(currentTy);
+            clearAllAnimationsIfNeeded();
+            if (dispatchNestedFlingIfNeeded(mGestures.clampVelocity(velocityX), mGestures.clampVelocity(velocityY))) {
+                release = mGestures.springBack(now) ? GestureCore.RELEASE_SPRING_BACK : GestureCore.RELEASE_NONE;
+            } else {
+                release = mGestures.release(now, velocityX, velocityY);
+            }
+        } else {
+            release = mGestures.release(now, velocityX, velocityY);
+        }
+        if (release == GestureCore.RELEASE_FLING) {
+            onFlingStarted();
+        } else if (release == GestureCore.RELEASE_SPRING_BACK) {
+            onSpringBackStarted();
         }
     }
 
-    private float calculateTranslation(View child, float originTranslation, float deltaTranslation, int direction) {
-        float currentTop = child.getY();
-        float currentBottom = currentTop + child.getMeasuredHeight();
-        float currentLeft = child.getX();
-        float currentRight = currentLeft + child.getMeasuredWidth();
+    /**
+     * Pans by the finger movement {@code (dx, dy)} while a nested scrolling parent exists: the
+     * parent may take part of it first, this layout pans up to its rest bounds and the rest is
+     * handed back to the parent.
+     */
+    private void performNestedTranslationIfNeeded(float dx, float dy) {
+        if (!mGestures.canPan()) {
+            return;
+        }
+        // nested scrolling deltas are scroll deltas, the opposite of the finger movement
+        mNestedConsumed[0] = 0;
+        mNestedConsumed[1] = 0;
+        if (dispatchNestedPreScroll(Math.round(-dx), Math.round(-dy), mNestedConsumed, mNestedOffset)) {
+            dx += mNestedConsumed[0];
+            dy += mNestedConsumed[1];
+            mNestedShiftX += mNestedOffset[0];
+            mNestedShiftY += mNestedOffset[1];
+        }
+        float ownDx = consumeTranslationX(dx);
+        float ownDy = consumeTranslationY(dy);
+        if (mTransform.translateBy(ownDx, ownDy)) {
+            invalidateTransform();
+        }
+        if (dispatchNestedScroll(Math.round(-ownDx), Math.round(-ownDy),
+                Math.round(ownDx - dx), Math.round(ownDy - dy), mNestedOffset)) {
+            mNestedShiftX += mNestedOffset[0];
+            mNestedShiftY += mNestedOffset[1];
+        }
+    }
 
-        float currentTranslation = originTranslation + deltaTranslation;
+    private float consumeTranslationX(float dx) {
+        return GestureMath.consumeWithin(mTransform.getTranslationX(), dx,
+                mTransform.getRestMinTranslationX(), mTransform.getRestMaxTranslationX());
+    }
 
-        switch (direction) {
-            case VERTICAL: {
-                if (deltaTranslation < 0) {
-                    // scroll up
-                    if (currentTop < mScrollBound.top) {
-                        return mMaxScrollUp;
-                    }
-                } else {
-                    // scroll down
-                    if (currentBottom > mScrollBound.bottom) {
-                        return mMaxScrollDown;
-                    }
-                }
-                break;
-            }
-            case HORIZONTAL: {
-                if (deltaTranslation < 0) {
-                    //scroll left
-                    if (currentLeft < mScrollBound.left) {
-                        return mMaxScrollLeft;
-                    }
-                } else {
-                    //scroll right
-                    if (currentRight > mScrollBound.right) {
-                        return mMaxScrollRight;
-                    }
-                }
-                break;
-            }
+    private float consumeTranslationY(float dy) {
+        return GestureMath.consumeWithin(mTransform.getTranslationY(), dy,
+                mTransform.getRestMinTranslationY(), mTransform.getRestMaxTranslationY());
+    }
+
+    /**
+     * Offers a release with the content velocity {@code (velocityX, velocityY)} to the nested
+     * scrolling parent.
+     *
+     * @return true if this layout must not fling
+     */
+    private boolean dispatchNestedFlingIfNeeded(float velocityX, float velocityY) {
+        if (!hasNestedScrollingParent()) {
+            return false;
+        }
+        if (dispatchNestedPreFling(-velocityX, -velocityY)) {
+            return true;
         }
-        return currentTranslation;
+        boolean canFling = canFlingContent(velocityX, velocityY);
+        dispatchNestedFling(-velocityX, -velocityY, canFling);
+        return !canFling;
     }
 
-    private void performChildFlingAnimationIfNeeded(float velocityX, float velocityY) {
-        if (!mIsScaling) {
-            View child = child();
-            float originTransX = child.getTranslationX();
-            float originTransY = child.getTranslationY();
-            float dx = velocityX / PER_SECONDS * FLING_ANIM_DURATION;
-            float dy = velocityY / PER_SECONDS * FLING_ANIM_DURATION;
-
-            initFlingAnimationIfNeeded(child, originTransX, originTransY, dx, dy);
-
-            AnimatorSet animatorTransXY = new AnimatorSet();
-            animatorTransXY.setDuration(FLING_ANIM_DURATION);
-            if (mAnimTranX != null && mAnimTranY != null) {
-                launch(animatorTransXY, mAnimTranX, mAnimTranY);
-            } else if (mAnimTranX != null) {
-                launch(animatorTransXY, mAnimTranX);
-            } else if (mAnimTranY != null) {
-                launch(animatorTransXY, mAnimTranY);
-            }
+    private boolean canFlingContent(float velocityX, float velocityY) {
+        return (velocityX != 0 && canScrollHorizontally(velocityX > 0 ? -1 : 1))
+                || (velocityY != 0 && canScrollVertically(velocityY > 0 ? -1 : 1));
+    }
+
+    /**
+     * Flings within the rest bounds, for flings handed over by a nested scrolling child.
+     */
+    private void flingWithinRestBounds(float velocityX, float velocityY) {
+        clearAllAnimationsIfNeeded();
+        mGestures.flingWithinRestBounds(AnimationUtils.currentAnimationTimeMillis(), velocityX, velocityY);
+        onFlingStarted();
+    }
+
+    @Override
+    public boolean canScrollHorizontally(int direction) {
+        // scrolling right moves the content left
+        float tx = mTransform.getTranslationX();
+        return direction < 0 ? tx < mTransform.getRestMaxTranslationX() : tx > mTransform.getRestMinTranslationX();
+    }
+
+    @Override
+    public boolean canScrollVertically(int direction) {
+        float ty = mTransform.getTranslationY();
+        return direction < 0 ? ty < mTransform.getRestMaxTranslationY() : ty > mTransform.getRestMinTranslationY();
+    }
+
+    // A nested scrolling child scrolls first, this layout pans with what it leaves over and
+    // passes the rest on to its own parent. The child's deltas are in its unscaled
+    // coordinates.
+
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+        return (nestedScrollAxes & (SCROLL_AXIS_HORIZONTAL | SCROLL_AXIS_VERTICAL)) != 0;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes) {
+        super.onNestedScrollAccepted(child, target, axes);
+        clearAllAnimationsIfNeeded();
+        startNestedScroll(axes);
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        float scale = mTransform.getScale();
+        mNestedConsumed[0] = 0;
+        mNestedConsumed[1] = 0;
+        if (dispatchNestedPreScroll(Math.round(dx * scale), Math.round(dy * scale), mNestedConsumed, null)) {
+            consumed[0] += Math.round(mNestedConsumed[0] / scale);
+            consumed[1] += Math.round(mNestedConsumed[1] / scale);
+        }
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
+        float scale = mTransform.getScale();
+        float dx = -dxUnconsumed * scale;
+        float dy = -dyUnconsumed * scale;
+        float ownDx = consumeTranslationX(dx);
+        float ownDy = consumeTranslationY(dy);
+        if (mTransform.translateBy(ownDx, ownDy)) {
+            invalidateTransform();
         }
+        dispatchNestedScroll(Math.round(dxConsumed * scale - ownDx), Math.round(dyConsumed * scale - ownDy),
+                Math.round(ownDx - dx), Math.round(ownDy - dy), null);
+    }
 
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        float scale = mTransform.getScale();
+        return dispatchNestedPreFling(velocityX * scale, velocityY * scale);
     }
 
-    private void launch(AnimatorSet set, Animator... animators) {
-        set.playTogether(animators);
-        set.start();
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
+        float scale = mTransform.getScale();
+        float contentVelocityX = -velocityX * scale;
+        float contentVelocityY = -velocityY * scale;
+        boolean fling = !consumed && canFlingContent(contentVelocityX, contentVelocityY);
+        if (fling) {
+            flingWithinRestBounds(contentVelocityX, contentVelocityY);
+        }
+        return dispatchNestedFling(velocityX * scale, velocityY * scale, consumed || fling) || fling;
     }
 
-    private void initFlingAnimationIfNeeded(View child, float originTransX, float originTransY, float dx, float dy) {
-        float flingX = Math.abs(mLastDownX - mDownX);
-        float flingY = Math.abs(mLastDownY - mDownY);
-        if (flingX < mTouchSlop && flingY < mTouchSlop) {
+    @Override
+    public void onStopNestedScroll(View target) {
+        super.onStopNestedScroll(target);
+        stopNestedScroll();
+    }
+
+    private void clearAllAnimationsIfNeeded() {
+        if (mGestures.stopFling()) {
+            mFrameMonitor.end(GestureFrameStats.GESTURE_FLING);
+        }
+        cancelPrefetchIfNeeded();
+    }
+
+    /**
+     * While dragging, prefetches where the content would be after
+     * {@link #PREFETCH_LOOKAHEAD_MS} at the current velocity, at most every
+     * {@link #PREFETCH_INTERVAL_MS}.
+     */
+    private void prefetchDragTargetIfNeeded(long eventTime) {
+        if (!(child() instanceof ViewportPrefetcher)
+                || (mPrefetchIssued && eventTime - mLastPrefetchTime < PREFETCH_INTERVAL_MS)) {
             return;
         }
-        if (flingY > flingX) {
-            // vertical
-            float percent = flingX / flingY;
-            Log.d(TAG, "initFlingAnimationIfNeeded: percent: " + percent);
-            if (percent >= VELOCITY_PERCENT) {
-                //init all
-                initChildFlingVerticalAnimation(child, originTransY, dy);
-                initChildFlingHorizontalAnimation(child, originTransX, dx);
-            } else {
-                // just vertical
-                mAnimTranX = null;
-                initChildFlingVerticalAnimation(child, originTransY, dy);
-            }
-        } else {
-            // horizontal
-            float percent = flingY / flingX;
-            if (percent >= VELOCITY_PERCENT) {
-                //init all
-                initChildFlingVerticalAnimation(child, originTransY, dy);
-                initChildFlingHorizontalAnimation(child, originTransX, dx);
-            } else {
-                // just horizontal
-                mAnimTranY = null;
-                initChildFlingHorizontalAnimation(child, originTransX, dx);
+        mLastPrefetchTime = eventTime;
+        mVelocityTracker.computeCurrentVelocity(PER_SECONDS, mMaxFlingVelocity);
+        float tx = mTransform.getTranslationX() + mVelocityTracker.getXVelocity() * PREFETCH_LOOKAHEAD_MS / PER_SECONDS;
+        float ty = mTransform.getTranslationY() + mVelocityTracker.getYVelocity() * PREFETCH_LOOKAHEAD_MS / PER_SECONDS;
+        prefetchIfNeeded(mTransform.clampTranslationX(tx), mTransform.clampTranslationY(ty));
+    }
+
+    /**
+     * Tells a {@link ViewportPrefetcher} child which part of it will be visible once the
+     * content is translated to {@code translationX}, {@code translationY}.
+     */
+    private void prefetchIfNeeded(float translationX, float translationY) {
+        View child = child();
+        if (!(child instanceof ViewportPrefetcher)) {
+            return;
+        }
+        float scale = mTransform.getScale();
+        float left = -(mTransform.getContentLeft() + translationX) / scale;
+        float top = -(mTransform.getContentTop() + translationY) / scale;
+        mPrefetchRect.set(left, top, left + getWidth() / scale, top + getHeight() / scale);
+        mPrefetchIssued = true;
+        ((ViewportPrefetcher) child).onPrefetch(mPrefetchRect, scale);
+    }
+
+    private void cancelPrefetchIfNeeded() {
+        if (mPrefetchIssued) {
+            mPrefetchIssued = false;
+            View child = child();
+            if (child instanceof ViewportPrefetcher) {
+                ((ViewportPrefetcher) child).onCancelPrefetch();
             }
         }
+    }
 
+    private void performChildTranslationIfNeeded(float dx, float dy) {
+        if (mGestures.canPan()) {
+            if (mCoalesceTouchInput && !mLowLatencyInput) {
+                mPendingDx += dx;
+                mPendingDy += dy;
+                if (!mCoalescedMovePending) {
+                    mCoalescedMovePending = true;
+                    Choreographer.getInstance().postFrameCallback(mCoalescedMoveCallback);
+                }
+                return;
+            }
+            if (mGestures.pan(dx, dy)) {
+                invalidateTransform();
+            }
+        }
     }
 
-    private void initChildFlingHorizontalAnimation(final View child, final float originTransX, float dx) {
-        float currentTransX = originTransX + dx;
-        if (currentTransX < mMaxScrollLeft) {
-            currentTransX = mMaxScrollLeft;
-        } else if (currentTransX > mMaxScrollRight) {
-            currentTransX = mMaxScrollRight;
+    /**
+     * When enabled all moves received between two frames are summed up and applied as a single
+     * translation when the next frame starts, before it is drawn, so the per-event work
+     * does not grow with the touch sampling rate. Velocity still uses every (historical)
+     * sample of every event.
+     */
+    public void setTouchInputCoalescingEnabled(boolean enabled) {
+        if (!enabled) {
+            flushCoalescedMove();
         }
-        final float diffX = currentTransX - originTransX;
-        mAnimTranX = ValueAnimator.ofFloat(originTransX, currentTransX)
-                .setDuration(FLING_ANIM_DURATION);
-        mAnimTranX.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                float fraction = animation.getAnimatedFraction();
-                float animateX = fraction * diffX;
-                child.setTranslationX(originTransX + animateX);
-            }
-        });
-        mAnimTranX.setInterpolator(new DecelerateInterpolator());
-        mAnimTranX.addListener(mFlingAnimatorListener);
-    }
-
-    private void initChildFlingVerticalAnimation(final View child, final float originTransY, float dy) {
-        float currentTransY = originTransY + dy;
-        if (currentTransY <= mMaxScrollUp) {
-            currentTransY = mMaxScrollUp;
-        } else if (currentTransY > mMaxScrollDown) {
-            currentTransY = mMaxScrollDown;
-        }
-        final float diffY = currentTransY - originTransY;
-        mAnimTranY = ValueAnimator.ofFloat(originTransY, currentTransY)
-                .setDuration(FLING_ANIM_DURATION);
-        mAnimTranY.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                float fraction = animation.getAnimatedFraction();
-                float animateY = fraction * diffY;
-                child.setTranslationY(originTransY + animateY);
+        mCoalesceTouchInput = enabled;
+    }
+
+    private void flushCoalescedMove() {
+        if (mCoalescedMovePending) {
+            Choreographer.getInstance().removeFrameCallback(mCoalescedMoveCallback);
+            if (applyCoalescedMove()) {
+                invalidateTransform();
             }
-        });
-        mAnimTranY.setInterpolator(new DecelerateInterpolator());
-        mAnimTranY.addListener(mFlingAnimatorListener);
+        }
     }
 
-    private void performChildScaleIfNeeded() {
-        View child = child();
-        if (checkScaleFactor(child.getScaleX(), child.getScaleY())) {
-            return;
+    private void cancelCoalescedMove() {
+        if (mCoalescedMovePending) {
+            Choreographer.getInstance().removeFrameCallback(mCoalescedMoveCallback);
+            mCoalescedMovePending = false;
+            mPendingDx = 0;
+            mPendingDy = 0;
         }
-        child.setScaleX(mScaleFactor);
-        child.setScaleY(mScaleFactor);
     }
 
-    private void performChildScaleWithAnimationIfNeeded() {
-        View child = child();
-        float originFactorX = child.getScaleX();
-        float originFactorY = child.getScaleY();
-        if (checkScaleFactor(originFactorX, originFactorY)) {
+    /**
+     * @return true if the summed up move changed the transform
+     */
+    private boolean applyCoalescedMove() {
+        mCoalescedMovePending = false;
+        float dx = mPendingDx;
+        float dy = mPendingDy;
+        mPendingDx = 0;
+        mPendingDy = 0;
+        // the moves were taken while panning was allowed
+        return mTransform.translateBy(dx, dy);
+    }
+
+    /**
+     * Applies the transform and redraws within the current frame. Only for frame callbacks,
+     * which run before the frame is drawn.
+     */
+    void applyTransformInFrame() {
+        applyTransformIfNeeded();
+        invalidate();
+    }
+
+    private void onFlingStarted() {
+        mFrameMonitor.begin(GestureFrameStats.GESTURE_FLING);
+        prefetchIfNeeded(mScroller.getFinalX(), mScroller.getFinalY());
+        invalidateTransform();
+        updateInteractionState();
+    }
+
+    private void onSpringBackStarted() {
+        mFrameMonitor.begin(GestureFrameStats.GESTURE_FLING);
+        invalidateTransform();
+        updateInteractionState();
+    }
+
+    /**
+     * When enabled a fling may run into the scroll edge and springs back to the scroll bound,
+     * and content released inside the scroll edge springs back as well. Disabled by default,
+     * a fling then stops at the scroll edge.
+     */
+    public void setFlingSpringBackEnabled(boolean enabled) {
+        mGestures.setFlingSpringBackEnabled(enabled);
+    }
+
+    private void performChildScaleIfNeeded(float factor, float focusX, float focusY) {
+        if (mGestures.scale(factor, focusX, focusY)) {
+            invalidateTransform();
+        }
+    }
+
+    private void performChildScaleWithAnimationIfNeeded(float focusX, float focusY) {
+        if (!mGestures.startScaleAnimation(focusX, focusY)) {
             return;
         }
-        ObjectAnimator scaleXAnimator = ObjectAnimator.ofFloat(child, ViewGroup.SCALE_X,
-                originFactorX, mScaleFactor);
-        ObjectAnimator scaleYAnimator = ObjectAnimator.ofFloat(child, ViewGroup.SCALE_Y,
-                originFactorY, mScaleFactor);
-        AnimatorSet animSet = new AnimatorSet();
-        animSet.setDuration(SCALE_ANIM_DURATION);
-        animSet.setInterpolator(new AccelerateInterpolator());
-        animSet.playTogether(scaleXAnimator, scaleYAnimator);
-        animSet.start();
+        ValueAnimator animator = ensureScaleAnimator();
+        animator.cancel();
+        mFrameMonitor.begin(GestureFrameStats.GESTURE_DOUBLE_TAP);
+        animator.start();
+        updateInteractionState();
+    }
+
+    /**
+     * The animator is created on first use and reused, so double taps do not allocate, until
+     * the layout has been idle for the idle timeout.
+     */
+    private ValueAnimator ensureScaleAnimator() {
+        if (mAnimScale == null) {
+            mAnimScale = createAnimator(SCALE_ANIM_DURATION, new AccelerateInterpolator(), mScaleUpdateListener);
+            mAnimScale.addListener(mScaleAnimListener);
+        }
+        return mAnimScale;
+    }
+
+    private boolean isScaleAnimating() {
+        return mAnimScale != null && mAnimScale.isRunning();
     }
 
     @Override
     public boolean onScale(ScaleGestureDetector detector) {
-        mScaleFactor *= detector.getScaleFactor();
-        mScaleFactor = Math.max(MIN_SCALE_FACTOR, Math.min(mScaleFactor, MAX_SCALE_FACTOR));
-        performChildScaleIfNeeded();
+        mFrameMonitor.onInput(detector.getEventTime());
+        performChildScaleIfNeeded(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
         return true;
     }
 
     @Override
     public boolean onScaleBegin(ScaleGestureDetector detector) {
-        mIsScaling = true;
+        clearPrediction();
+        mGestures.beginScale();
+        mFrameMonitor.begin(GestureFrameStats.GESTURE_PINCH);
+        updateInteractionState();
+        cancelSharpRenderIfNeeded();
         return true;
     }
 
     @Override
     public void onScaleEnd(ScaleGestureDetector detector) {
+        mFrameMonitor.end(GestureFrameStats.GESTURE_PINCH);
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
+        // the visible part of the child changed even if the transform did not
+        mTransformTracker.invalidate();
+        invalidateTransform();
+    }
+
+    /**
+     * Writes to {@link #mTransform} only schedule a frame, the child is updated once per frame
+     * in {@link #computeScroll()} no matter how many writes happened in between.
+     */
+    private void invalidateTransform() {
+        if (mTransformGroup != null) {
+            mTransformGroup.invalidateMembers();
+        } else {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    @Override
+    public void computeScroll() {
+        super.computeScroll();
+        // in a group whichever member draws first advances the owner's fling, so every member
+        // applies the same transform in this frame
+        ZoomLayout driver = mTransformGroup != null ? mTransformGroup.getInputOwner() : this;
+        if (driver != null) {
+            driver.computeFlingIfNeeded();
+        }
+        applyTransformIfNeeded();
+    }
+
+    /**
+     * Advances the fling to the current frame time. Calling it again within the same frame
+     * has no effect.
+     */
+    private void computeFlingIfNeeded() {
+        if (mGestures.computeFling(AnimationUtils.currentAnimationTimeMillis())) {
+            invalidateTransform();
+            if (mScroller.isFinished()) {
+                mFrameMonitor.end(GestureFrameStats.GESTURE_FLING);
+                updateInteractionState();
+            }
+        }
+    }
+
+    /**
+     * Shares the transform with the other layouts of {@code group}, or makes this layout use
+     * its own transform again if null. See {@link ZoomTransformGroup}.
+     */
+    void setTransformGroup(ZoomTransformGroup group) {
+        if (group == mTransformGroup) {
+            return;
+        }
+        stopTransformAnimations();
+        ViewportTransform current = mTransform;
+        if (mTransformGroup != null) {
+            mTransformGroup.onMemberRemoved(this);
+            mTransform = new ViewportTransform();
+            mTransform.setScaleRange(current.getMinScale(), current.getMaxScale());
+            mTransform.set(current.getScale(), current.getTranslationX(), current.getTranslationY());
+        }
+        mTransformGroup = group;
+        if (group != null) {
+            group.onMemberAdded(this, current);
+            mTransform = group.getTransform();
+        }
+        mGestures.setTransform(mTransform);
+        mTransformTracker.invalidate();
+        // the shared transform takes the bounds of the member that joined last
+        updateBoundsIfNeeded(true);
+        invalidateTransform();
+    }
+
+    public ZoomTransformGroup getTransformGroup() {
+        return mTransformGroup;
+    }
+
+    private boolean isInputOwnedByOtherMember() {
+        if (mTransformGroup == null) {
+            return false;
+        }
+        ZoomLayout owner = mTransformGroup.getInputOwner();
+        return owner != null && owner != this && owner.isTouching();
+    }
+
+    boolean isTouching() {
+        return mIsTouching;
+    }
+
+    /**
+     * Stops the fling, scale animation and pending moves writing the transform.
+     */
+    void stopTransformAnimations() {
+        clearAllAnimationsIfNeeded();
+        cancelCoalescedMove();
+        if (mAnimScale != null) {
+            mAnimScale.cancel();
+        }
+        updateInteractionState();
+    }
+
+    /**
+     * When enabled the child is frozen into a hardware layer (or a bitmap without hardware
+     * acceleration) while it is dragged, pinched, flung or animated, and only the snapshot is
+     * transformed. The live child is drawn again once the content settles. Disabled by
+     * default, useful for children that are expensive to draw.
+     * <p>
+     * See also {@link #setHardwareLayerWhileMovingEnabled(boolean)}, which keeps redrawing the
+     * child.
+     */
+    public void setGestureSnapshotEnabled(boolean enabled) {
+        mGestureSnapshotEnabled = enabled;
+        if (!enabled) {
+            mGestureSnapshot.release();
+            invalidate();
+        }
+    }
+
+    /**
+     * When enabled and hardware accelerated, the child is put on a hardware layer while it is
+     * dragged, pinched, flung or animated, so moving it only composites the layer. The layer
+     * is removed once the content settles and its memory freed. Unlike the gesture snapshot
+     * the layer still redraws when the child invalidates. Disabled by default.
+     * <p>
+     * A layer is rendered at the child's own size, so it is only used while the content is
+     * not magnified and the child fits into a texture. It is removed as soon as a pinch
+     * magnifies the content, which would blur it.
+     */
+    public void setHardwareLayerWhileMovingEnabled(boolean enabled) {
+        mMovingLayerEnabled = enabled;
+        if (!enabled && !mGestureSnapshotEnabled && mGestureSnapshot.isActive()) {
+            mGestureSnapshot.end();
+            invalidate();
+        }
+    }
+
+    private void beginGestureSnapshotIfNeeded() {
+        if (mGestureSnapshot.isActive()) {
+            return;
+        }
+        boolean hardwareAccelerated = isHardwareAccelerated();
+        // a recorded child is replayed by this layout, a layer on it would never be drawn
+        boolean movingLayer = mMovingLayerEnabled && hardwareAccelerated && !isRecordingChild()
+                && fitsMovingLayer(child());
+        if (mGestureSnapshotEnabled || movingLayer) {
+            mGestureSnapshot.begin(child(), hardwareAccelerated);
+            invalidate();
+        }
+    }
+
+    private boolean fitsMovingLayer(View child) {
+        return child != null && mTransform.getScale() <= 1
+                && child.getWidth() <= mMaxLayerSize && child.getHeight() <= mMaxLayerSize;
+    }
+
+    /**
+     * True when the content is neither touched nor animated.
+     */
+    private boolean isSettled() {
+        return !mIsTouching && mInteractionState.isIdle();
+    }
+
+    /**
+     * Returns what the content is doing, one of the {@link InteractionState} constants.
+     */
+    public int getInteractionState() {
+        return mInteractionState.get();
+    }
+
+    /**
+     * Sets how long the content has to be idle before the animator, gesture snapshot, child
+     * recording and prefetch are released. They are recreated on the next interaction.
+     */
+    public void setIdleTimeout(long timeoutMs) {
+        mIdleTimeout = timeoutMs;
+    }
+
+    /**
+     * Moves the {@link InteractionState} to match the gesture and animation flags. Leaving
+     * idle puts the child on the gesture snapshot, returning to idle takes it off again.
+     *
+     * @return true if the state changed
+     */
+    private boolean updateInteractionState() {
+        int state = InteractionState.derive(mGestures.isScaling(), mIsTouching && mGestures.isDragging(),
+                !mScroller.isFinished(), isScaleAnimating());
+        boolean wasIdle = mInteractionState.isIdle();
+        if (!mInteractionState.moveTo(state, SystemClock.uptimeMillis())) {
+            return false;
+        }
+        if (DEBUG) {
+            Log.d(TAG, "interaction state " + InteractionState.toString(state));
+        }
+        if (state == InteractionState.IDLE) {
+            onSettled();
+        } else if (wasIdle) {
+            removeCallbacks(mIdleReleaseRunnable);
+            beginGestureSnapshotIfNeeded();
+        }
+        return true;
+    }
+
+    private void onGestureEnded() {
+        // a touch that never moved the content leaves the state idle
+        if (!updateInteractionState() && mInteractionState.isIdle()) {
+            onSettled();
+        }
+    }
+
+    private void onSettled() {
+        if (mGestureSnapshot.isActive()) {
+            mGestureSnapshot.end();
+            invalidate();
+        }
+        if (mProgressiveRenderingEnabled) {
+            // the next draw requests the raster for the settled scale
+            invalidate();
+        }
+        removeCallbacks(mIdleReleaseRunnable);
+        postDelayed(mIdleReleaseRunnable, mIdleTimeout);
+    }
+
+    private final Runnable mIdleReleaseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            releaseIdleResources();
+        }
+    };
+
+    /**
+     * Drops what only moving content needs once it has been idle for the idle timeout.
+     */
+    private void releaseIdleResources() {
+        if (!isSettled()) {
+            return;
+        }
+        mGestureSnapshot.trimMemory();
+        if (mAnimScale != null) {
+            mAnimScale.removeAllListeners();
+            mAnimScale.removeAllUpdateListeners();
+            mAnimScale = null;
+        }
+        if (isRecordingChild() && !mProgressiveRenderingEnabled) {
+            // recorded again by the next draw
+            mChildPicture.release();
+        }
+        cancelPrefetchIfNeeded();
+        if (mVelocityTracker != null) {
+            mVelocityTracker.clear();
+        }
+    }
+
+    /**
+     * When enabled the child's drawing is recorded once into a {@link android.graphics.Picture}
+     * and replayed under the current scale and translation, and only recorded again after
+     * the child invalidated. Vector content stays sharp at any scale without running the
+     * child's draw code for every transform change. Disabled by default.
+     * <p>
+     * Content that only renders on the hardware pipeline (elevation shadows, hardware
+     * bitmaps, {@code TextureView}) is not recorded.
+     */
+    public void setChildRecordingEnabled(boolean enabled) {
+        mChildRecordingEnabled = enabled;
+        mChildPicture.release();
+        invalidate();
+    }
+
+    /**
+     * Like {@link #setChildRecordingEnabled(boolean)}, but the recording is rasterized on a
+     * background thread instead of being replayed on the UI thread: a low resolution raster of
+     * the whole child is shown while the content moves, and once it settles the visible part
+     * is rasterized again at the current scale and swapped in when ready. Disabled by default.
+     */
+    public void setProgressiveRenderingEnabled(boolean enabled) {
+        mProgressiveRenderingEnabled = enabled;
+        if (enabled && mLevelOfDetailRenderer == null) {
+            DisplayMetrics dm = getResources().getDisplayMetrics();
+            mLevelOfDetailRenderer = new LevelOfDetailRenderer(this, DecodeScheduler.getDefault(),
+                    BitmapPool.getDefault(getContext()), dm.widthPixels * dm.heightPixels * MAX_SNAPSHOT_SCREENS);
+        } else if (!enabled && mLevelOfDetailRenderer != null) {
+            mLevelOfDetailRenderer.release();
+        }
+        invalidate();
+    }
+
+    @Override
+    protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+        if (canvas.isHardwareAccelerated()) {
+            // the max texture size, unknown until the first hardware draw
+            mMaxLayerSize = Math.min(canvas.getMaximumBitmapWidth(), canvas.getMaximumBitmapHeight());
+        }
+        if (mGestureSnapshot.draw(canvas, child, mTransform)) {
+            return false;
+        }
+        if (isRecordingChild() && child == child() && mChildPicture.canDraw(canvas, child)) {
+            Picture picture = mChildPicture.record(child);
+            if (mProgressiveRenderingEnabled) {
+                mLevelOfDetailRenderer.setPicture(picture, child.getWidth(), child.getHeight());
+                if (mLevelOfDetailRenderer.draw(canvas, mTransform, getWidth(), getHeight(), isSettled())) {
+                    return false;
+                }
+            }
+            mChildPicture.draw(canvas, mTransform);
+            return false;
+        }
+        return super.drawChild(canvas, child, drawingTime);
+    }
+
+    private void cancelSharpRenderIfNeeded() {
+        if (mLevelOfDetailRenderer != null) {
+            mLevelOfDetailRenderer.cancelSharp();
+        }
+    }
+
+    private boolean isRecordingChild() {
+        return mChildRecordingEnabled || mProgressiveRenderingEnabled;
+    }
+
+    @Override
+    public void onDescendantInvalidated(View child, View target) {
+        super.onDescendantInvalidated(child, target);
+        onChildContentInvalidated();
+    }
+
+    @Override
+    public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+        onChildContentInvalidated();
+        return super.invalidateChildInParent(location, dirty);
+    }
+
+    private void onChildContentInvalidated() {
+        // applying the transform invalidates the child's properties, not its content
+        if (mApplyingTransform) {
+            return;
+        }
+        if (isRecordingChild()) {
+            mChildPicture.invalidate();
+            // the picture is replayed from this layout's display list, which a hardware
+            // accelerated child invalidation does not rebuild
+            invalidate();
+        }
+        if (mMinimapView != null) {
+            mMinimapView.onContentInvalidated();
+        }
+    }
+
+    /**
+     * Records every touch event this layout receives into {@code recorder}, or stops recording
+     * if null. Meant for capturing gestures to replay them in tests.
+     */
+    public void setGestureTraceRecorder(GestureTraceRecorder recorder) {
+        mTraceRecorder = recorder;
+    }
+
+    void setMinimapView(ZoomMinimapView minimapView) {
+        mMinimapView = minimapView;
+        // report the current viewport to the new minimap in the next frame
+        mTransformTracker.invalidate();
+        invalidateTransform();
+    }
+
+    /**
+     * Moves the content so the point {@code (x, y)} in child coordinates is in the middle of
+     * the viewport, as far as the scroll bounds allow. Stops a running fling or animation.
+     */
+    public void centerOn(float x, float y) {
+        stopTransformAnimations();
+        float scale = mTransform.getScale();
+        mTransform.setTranslation(getWidth() / 2f - mTransform.getContentLeft() - x * scale,
+                getHeight() / 2f - mTransform.getContentTop() - y * scale);
+        invalidateTransform();
+    }
+
+    private void applyTransformIfNeeded() {
+        View child = child();
+        if (child == null || !mTransformTracker.apply(mTransform)) {
+            return;
+        }
+        float scale = mTransform.getScale();
+        if (scale > 1 && !mGestureSnapshotEnabled && mGestureSnapshot.isActive()) {
+            // the moving layer would be magnified
+            mGestureSnapshot.end();
+        }
+        mApplyingTransform = true;
+        child.setPivotX(0);
+        child.setPivotY(0);
+        child.setScaleX(scale);
+        child.setScaleY(scale);
+        child.setTranslationX(mTransform.getTranslationX());
+        child.setTranslationY(mTransform.getTranslationY());
+        mApplyingTransform = false;
+        updateTouchMatrix();
+        if (child instanceof ViewportAware) {
+            ((ViewportAware) child).onViewportChanged(mTransform, getWidth(), getHeight());
+        }
+        mFrameMonitor.onTransformApplied();
+        dispatchViewportChanged();
+    }
+
+    private void dispatchViewportChanged() {
+        if (mViewportListeners.isEmpty()) {
+            return;
+        }
+        mViewportSnapshot.set(mTransform, getWidth(), getHeight());
+        // by index, a listener may remove itself
+        for (int i = 0; i < mViewportListeners.size(); i++) {
+            mViewportListeners.get(i).onViewportChanged(mViewportSnapshot);
+        }
+    }
+
+    /**
+     * Adds a listener called at most once per frame, when the transform applied to the child
+     * changed, however many times it was written during that frame.
+     */
+    public void addOnViewportChangeListener(OnViewportChangeListener listener) {
+        if (!mViewportListeners.contains(listener)) {
+            mViewportListeners.add(listener);
+        }
+    }
+
+    public void removeOnViewportChangeListener(OnViewportChangeListener listener) {
+        mViewportListeners.remove(listener);
+    }
+
+    /**
+     * Receives viewport changes. The snapshot is reused, copy what you need before returning.
+     */
+    public interface OnViewportChangeListener {
+        void onViewportChanged(ViewportSnapshot viewport);
+    }
+
+    /**
+     * Reports frame pacing and input latency of every pan, pinch, fling and double tap once it
+     * ends. Nothing is measured while no listener is set.
+     */
+    public void setOnGestureFrameStatsListener(OnGestureFrameStatsListener listener) {
+        mFrameMonitor.setListener(listener);
+    }
+
+    /**
+     * Receives the frame stats of a gesture. The stats object is reused, copy what you need
+     * before returning.
+     */
+    public interface OnGestureFrameStatsListener {
+        void onGestureFrameStats(GestureFrameStats stats);
     }
 
     private View child() {
@@ -514,64 +1516,106 @@ public class ZoomLayout extends FrameLayout implements ScaleGestureDetector.OnSc
 
         @Override
         public boolean onDoubleTap(MotionEvent e) {
-            mScaleFactor += INCREASE_SCALE_FACTOR;
-            mScaleFactor = Math.max(MIN_SCALE_FACTOR, Math.min(mScaleFactor, MAX_SCALE_FACTOR));
-            performChildScaleWithAnimationIfNeeded();
+            performChildScaleWithAnimationIfNeeded(e.getX(), e.getY());
             return true;
         }
     };
 
-    private boolean checkScaleFactor(float originScaleFactorX, float originScaleFactorY) {
-        boolean checkMaxFactor = (originScaleFactorX == MAX_SCALE_FACTOR && originScaleFactorY == MAX_SCALE_FACTOR
-                && mScaleFactor >= MAX_SCALE_FACTOR);
-        boolean checkMinFactor = (originScaleFactorX == MIN_SCALE_FACTOR && originScaleFactorY == MIN_SCALE_FACTOR
-                && mScaleFactor <= MIN_SCALE_FACTOR);
-        return checkMaxFactor || checkMinFactor;
-    }
-
-    private AnimatorListenerAdapter mFlingAnimatorListener = new AnimatorListenerAdapter() {
+    private Choreographer.FrameCallback mCoalescedMoveCallback = new Choreographer.FrameCallback() {
         @Override
-        public void onAnimationCancel(Animator animation) {
-            super.onAnimationCancel(animation);
-            mIsFlinging = false;
+        public void doFrame(long frameTimeNanos) {
+            if (!applyCoalescedMove()) {
+                return;
+            }
+            // posting the redraw from here would show the move one frame late
+            if (mTransformGroup != null) {
+                mTransformGroup.applyToMembers();
+            } else {
+                applyTransformInFrame();
+            }
         }
+    };
 
+    private Animator.AnimatorListener mScaleAnimListener = new AnimatorListenerAdapter() {
         @Override
         public void onAnimationEnd(Animator animation) {
-            super.onAnimationEnd(animation);
-            mIsFlinging = false;
+            mFrameMonitor.end(GestureFrameStats.GESTURE_DOUBLE_TAP);
+            updateInteractionState();
         }
+    };
 
+    private ValueAnimator.AnimatorUpdateListener mScaleUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
         @Override
-        public void onAnimationStart(Animator animation) {
-            super.onAnimationStart(animation);
-            mIsFlinging = true;
+        public void onAnimationUpdate(ValueAnimator animation) {
+            if (mGestures.animateScale(animation.getAnimatedFraction())) {
+                invalidateTransform();
+            }
         }
+    };
 
-        @Override
-        public void onAnimationPause(Animator animation) {
-            super.onAnimationPause(animation);
-            mIsFlinging = false;
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mVelocityTracker == null) {
+            // recycled by a previous detach
+            mVelocityTracker = VelocityTracker.obtain();
         }
-    };
+        getContext().getApplicationContext().registerComponentCallbacks(mMemoryCallbacks);
+        Display display = getDisplay();
+        if (display != null) {
+            mFrameMonitor.setRefreshRate(display.getRefreshRate());
+        }
+    }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        cancelCoalescedMove();
+        removeCallbacks(mIdleReleaseRunnable);
+        mFrameMonitor.cancel();
+        mGestureSnapshot.release();
+        mChildPicture.release();
+        if (mLevelOfDetailRenderer != null) {
+            mLevelOfDetailRenderer.release();
+        }
+        getContext().getApplicationContext().unregisterComponentCallbacks(mMemoryCallbacks);
         if (mVelocityTracker != null) {
             mVelocityTracker.recycle();
+            mVelocityTracker = null;
         }
     }
 
+    private final ComponentCallbacks2 mMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                mGestureSnapshot.trimMemory();
+                if (mLevelOfDetailRenderer != null) {
+                    // rasterized again from the recording on the next draw
+                    mLevelOfDetailRenderer.release();
+                    invalidate();
+                }
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            mGestureSnapshot.trimMemory();
+        }
+    };
+
     @Nullable
     @Override
     protected Parcelable onSaveInstanceState() {
-        View child = child();
         Parcelable superState = super.onSaveInstanceState();
         SavedState savedState = new SavedState(superState);
-        savedState.translationX = child.getTranslationX();
-        savedState.translationY = child.getTranslationY();
-        savedState.scaleFactor = child.getScaleX();
+        savedState.translationX = mTransform.getTranslationX();
+        savedState.translationY = mTransform.getTranslationY();
+        savedState.scaleFactor = mTransform.getScale();
         return savedState;
     }
 
@@ -583,14 +1627,11 @@ public class ZoomLayout extends FrameLayout implements ScaleGestureDetector.OnSc
     }
 
     private void restoreViewState(SavedState state) {
-        View child = child();
         float transX = state.translationX;
         float transY = state.translationY;
         float scale = state.scaleFactor;
-        child.setTranslationX(transX);
-        child.setTranslationY(transY);
-        child.setScaleX(scale);
-        child.setScaleY(scale);
+        mTransform.set(mTransform.clampScale(scale), transX, transY);
+        invalidateTransform();
     }
 
     private static class SavedState extends BaseSavedState {
@@ -0,0 +1,212 @@
+package com.zhanghao.zoomlayout;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Overview of the child of a {@link ZoomLayout} with the visible area outlined.
+ * <p>
+ * The child is drawn once into a downsampled thumbnail, which is only redrawn some time after
+ * the child's content was invalidated, so following the viewport costs a bitmap and a
+ * rectangle per frame. Tapping or dragging centers the viewport on the touched point.
+ * <p>
+ * A child that culls what is outside of the viewport has to implement
+ * {@link WholeContentDrawable}, otherwise the thumbnail only shows what is on screen.
+ * <p>
+ * The thumbnail is drawn in software, content that only renders on the hardware pipeline is
+ * missing from it.
+ */
+public class ZoomMinimapView extends View implements ZoomLayout.OnViewportChangeListener {
+    private static final long REFRESH_DELAY_MS = 300;
+    private static final int DEFAULT_VIEWPORT_COLOR = 0xFFFF4081;
+
+    private final MinimapGeometry mGeometry = new MinimapGeometry();
+    private final RectF mViewportRect = new RectF();
+    private final Paint mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint mViewportPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private ZoomLayout mZoomLayout;
+    private Bitmap mThumbnail;
+    private boolean mThumbnailDirty = true;
+    private boolean mRefreshPending;
+
+    public ZoomMinimapView(Context context) {
+        this(context, null);
+    }
+
+    public ZoomMinimapView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public ZoomMinimapView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        mViewportPaint.setStyle(Paint.Style.STROKE);
+        mViewportPaint.setStrokeWidth(DensityUtil.dp2px(context, 2));
+        mViewportPaint.setColor(DEFAULT_VIEWPORT_COLOR);
+    }
+
+    /**
+     * Shows the child of {@code zoomLayout}, or nothing if null.
+     */
+    public void setZoomLayout(ZoomLayout zoomLayout) {
+        if (mZoomLayout == zoomLayout) {
+            return;
+        }
+        if (mZoomLayout != null) {
+            mZoomLayout.removeOnViewportChangeListener(this);
+            mZoomLayout.setMinimapView(null);
+        }
+        mZoomLayout = zoomLayout;
+        if (zoomLayout != null) {
+            zoomLayout.addOnViewportChangeListener(this);
+            zoomLayout.setMinimapView(this);
+        }
+        mThumbnailDirty = true;
+        invalidate();
+    }
+
+    public void setViewportColor(int color) {
+        mViewportPaint.setColor(color);
+        invalidate();
+    }
+
+    @Override
+    public void onViewportChanged(ViewportSnapshot viewport) {
+        View child = zoomChild();
+        if (child != null && mGeometry.set(child.getWidth(), child.getHeight(), getWidth(), getHeight())) {
+            mThumbnailDirty = true;
+        }
+        mViewportRect.set(
+                mGeometry.toMinimapX(viewport.getVisibleLeft()),
+                mGeometry.toMinimapY(viewport.getVisibleTop()),
+                mGeometry.toMinimapX(viewport.getVisibleRight()),
+                mGeometry.toMinimapY(viewport.getVisibleBottom()));
+        invalidate();
+    }
+
+    /**
+     * Called by the {@link ZoomLayout} when its child's content changed. Changes are batched
+     * so a child animating its content does not redraw the thumbnail every frame.
+     */
+    void onContentInvalidated() {
+        if (!mRefreshPending) {
+            mRefreshPending = true;
+            postDelayed(mRefreshRunnable, REFRESH_DELAY_MS);
+        }
+    }
+
+    private final Runnable mRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mRefreshPending = false;
+            mThumbnailDirty = true;
+            invalidate();
+        }
+    };
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mThumbnailDirty = true;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        View child = zoomChild();
+        if (child == null) {
+            return;
+        }
+        if (mThumbnailDirty) {
+            mGeometry.set(child.getWidth(), child.getHeight(), getWidth(), getHeight());
+            updateThumbnail(child);
+            mThumbnailDirty = false;
+        }
+        if (mThumbnail != null) {
+            canvas.drawBitmap(mThumbnail, mGeometry.getOffsetX(), mGeometry.getOffsetY(), mBitmapPaint);
+        }
+        canvas.drawRect(mViewportRect, mViewportPaint);
+    }
+
+    private void updateThumbnail(View child) {
+        if (mGeometry.isEmpty()) {
+            return;
+        }
+        int width = mGeometry.getThumbnailWidth();
+        int height = mGeometry.getThumbnailHeight();
+        if (mThumbnail == null || mThumbnail.getWidth() != width || mThumbnail.getHeight() != height) {
+            releaseThumbnail();
+            mThumbnail = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            mThumbnail.eraseColor(Color.TRANSPARENT);
+        }
+        Canvas canvas = new Canvas(mThumbnail);
+        canvas.scale(mGeometry.getScale(), mGeometry.getScale());
+        // View.draw() draws the child in its own coordinates, without the zoom transform
+        if (child instanceof WholeContentDrawable) {
+            ((WholeContentDrawable) child).drawWholeContent(canvas);
+        } else {
+            child.draw(canvas);
+        }
+    }
+
+    private void releaseThumbnail() {
+        if (mThumbnail != null) {
+            mThumbnail.recycle();
+            mThumbnail = null;
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mZoomLayout == null || mGeometry.isEmpty()) {
+            return false;
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                getParent().requestDisallowInterceptTouchEvent(true);
+                centerOn(event);
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                centerOn(event);
+                return true;
+            case MotionEvent.ACTION_UP:
+                performClick();
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    private void centerOn(MotionEvent event) {
+        mZoomLayout.centerOn(mGeometry.toChildX(event.getX()), mGeometry.toChildY(event.getY()));
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mThumbnailDirty = true;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(mRefreshRunnable);
+        mRefreshPending = false;
+        releaseThumbnail();
+    }
+
+    private View zoomChild() {
+        return mZoomLayout != null && mZoomLayout.getChildCount() > 0 ? mZoomLayout.getChildAt(0) : null;
+    }
+}
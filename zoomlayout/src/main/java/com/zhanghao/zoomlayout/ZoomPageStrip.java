@@ -0,0 +1,462 @@
+package com.zhanghao.zoomlayout;
+
+import android.content.Context;
+import android.database.DataSetObserver;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+
+/**
+ * Vertical or horizontal strip of pages, meant to be the child of a {@link ZoomLayout}.
+ * <p>
+ * The strip is measured from the page sizes reported by its {@link Adapter}, but page views
+ * only exist for the pages intersecting the viewport plus {@link #setPrefetchDistance(int)}
+ * pixels around it. Pages scrolled away are recycled into a small pool and bound again for
+ * the pages coming into view, so a long document costs about as much as a short one.
+ * <p>
+ * Pages are added, measured and laid out in place when the viewport changes, without a
+ * layout pass of the strip or its parents.
+ * <p>
+ * {@link #drawWholeContent(Canvas)} draws the pages that are not bound through
+ * {@link Adapter#onDrawPageThumbnail(Canvas, int)}, for a {@link ZoomMinimapView}.
+ */
+public class ZoomPageStrip extends ViewGroup implements ViewportAware, WholeContentDrawable {
+    public static final int VERTICAL = 0;
+    public static final int HORIZONTAL = 1;
+    private static final int MAX_RECYCLED_PER_TYPE = 3;
+
+    private Adapter<?> mAdapter;
+    private int mOrientation = VERTICAL;
+    private int mPageSpacing;
+    private int mPrefetchDistance;
+    private int mPageCount;
+    private int[] mPageOffsets = new int[1];
+    private int mCrossSize;
+    private final ArrayList<ViewHolder> mAttached = new ArrayList<>();
+    private final SparseArray<ArrayList<ViewHolder>> mRecycled = new SparseArray<>();
+    private final float[] mViewportPoints = new float[4];
+    private boolean mHasViewport;
+    private float mViewportStart;
+    private float mViewportEnd;
+    private float mViewportScale = 1;
+    private int mFirstPage;
+    private int mLastPage = -1;
+    private boolean mBlockLayoutRequests;
+    private boolean mDrawingWholeContent;
+
+    private final DataSetObserver mObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            onDataSetChanged();
+        }
+    };
+
+    public ZoomPageStrip(Context context) {
+        this(context, null);
+    }
+
+    public ZoomPageStrip(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public ZoomPageStrip(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    public void setAdapter(Adapter<?> adapter) {
+        if (mAdapter != null) {
+            mAdapter.unregisterDataSetObserver(mObserver);
+        }
+        recycleAll();
+        mRecycled.clear();
+        mAdapter = adapter;
+        if (adapter != null) {
+            adapter.registerDataSetObserver(mObserver);
+        }
+        onDataSetChanged();
+    }
+
+    public Adapter<?> getAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * @param orientation {@link #VERTICAL} or {@link #HORIZONTAL}
+     */
+    public void setOrientation(int orientation) {
+        if (orientation != VERTICAL && orientation != HORIZONTAL) {
+            throw new IllegalArgumentException("invalid orientation " + orientation);
+        }
+        if (mOrientation != orientation) {
+            mOrientation = orientation;
+            onDataSetChanged();
+        }
+    }
+
+    public void setPageSpacing(int pageSpacing) {
+        if (mPageSpacing != pageSpacing) {
+            mPageSpacing = pageSpacing;
+            onDataSetChanged();
+        }
+    }
+
+    /**
+     * Sets how far outside of the viewport, in screen pixels, pages are already bound.
+     */
+    public void setPrefetchDistance(int prefetchDistance) {
+        mPrefetchDistance = prefetchDistance;
+        updatePages(false);
+    }
+
+    /**
+     * Returns the page view for {@code position}, or null if the page is not bound.
+     */
+    public View findViewForPosition(int position) {
+        for (int i = 0, size = mAttached.size(); i < size; i++) {
+            ViewHolder holder = mAttached.get(i);
+            if (holder.mPosition == position) {
+                return holder.itemView;
+            }
+        }
+        return null;
+    }
+
+    private void onDataSetChanged() {
+        recycleAll();
+        mPageCount = mAdapter == null ? 0 : mAdapter.getPageCount();
+        if (mPageOffsets.length < mPageCount + 1) {
+            mPageOffsets = new int[mPageCount + 1];
+        }
+        int offset = 0;
+        int crossSize = 0;
+        for (int i = 0; i < mPageCount; i++) {
+            mPageOffsets[i] = offset;
+            offset += mainSize(i) + mPageSpacing;
+            crossSize = Math.max(crossSize, crossSize(i));
+        }
+        mPageOffsets[mPageCount] = mPageCount == 0 ? 0 : offset - mPageSpacing;
+        mCrossSize = crossSize;
+        requestLayout();
+        invalidate();
+    }
+
+    private int mainSize(int position) {
+        return mOrientation == VERTICAL ? mAdapter.getPageHeight(position) : mAdapter.getPageWidth(position);
+    }
+
+    private int crossSize(int position) {
+        return mOrientation == VERTICAL ? mAdapter.getPageWidth(position) : mAdapter.getPageHeight(position);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int length = mPageOffsets[mPageCount];
+        int width = mOrientation == VERTICAL ? mCrossSize : length;
+        int height = mOrientation == VERTICAL ? length : mCrossSize;
+        setMeasuredDimension(
+                MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.EXACTLY
+                        ? MeasureSpec.getSize(widthMeasureSpec) : width,
+                MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.EXACTLY
+                        ? MeasureSpec.getSize(heightMeasureSpec) : height);
+        // a page that requested a layout is measured again here, layoutPage() uses its size
+        for (int i = 0, size = mAttached.size(); i < size; i++) {
+            measurePage(mAttached.get(i));
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        for (int i = 0, size = mAttached.size(); i < size; i++) {
+            layoutPage(mAttached.get(i));
+        }
+        updatePages(true);
+    }
+
+    @Override
+    public void onViewportChanged(ViewportTransform transform, int viewportWidth, int viewportHeight) {
+        float[] pts = mViewportPoints;
+        pts[0] = 0;
+        pts[1] = 0;
+        pts[2] = viewportWidth;
+        pts[3] = viewportHeight;
+        transform.invertPoints(pts);
+        mViewportStart = mOrientation == VERTICAL ? pts[1] : pts[0];
+        mViewportEnd = mOrientation == VERTICAL ? pts[3] : pts[2];
+        mViewportScale = transform.getScale();
+        mHasViewport = true;
+        updatePages(false);
+    }
+
+    /**
+     * Recycles the pages that left the viewport and binds the ones that entered it.
+     */
+    private void updatePages(boolean force) {
+        if (mAdapter == null || getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        float start;
+        float end;
+        if (mHasViewport) {
+            float prefetch = mPrefetchDistance / mViewportScale;
+            start = mViewportStart - prefetch;
+            end = mViewportEnd + prefetch;
+        } else {
+            start = 0;
+            end = mOrientation == VERTICAL ? getHeight() : getWidth();
+        }
+        int first = mPageCount;
+        int last = -1;
+        if (mPageCount > 0 && end >= 0 && start <= mPageOffsets[mPageCount]) {
+            first = findPage(start);
+            last = findPage(end);
+        }
+        if (!force && first == mFirstPage && last == mLastPage) {
+            return;
+        }
+        mFirstPage = first;
+        mLastPage = last;
+        for (int i = mAttached.size() - 1; i >= 0; i--) {
+            ViewHolder holder = mAttached.get(i);
+            if (holder.mPosition < first || holder.mPosition > last) {
+                mAttached.remove(i);
+                recycle(holder);
+            }
+        }
+        for (int position = first; position <= last; position++) {
+            if (findViewForPosition(position) == null) {
+                bindPage(position);
+            }
+        }
+        invalidate();
+    }
+
+    @Override
+    public void drawWholeContent(Canvas canvas) {
+        mDrawingWholeContent = true;
+        try {
+            draw(canvas);
+        } finally {
+            mDrawingWholeContent = false;
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if (mDrawingWholeContent) {
+            drawPageThumbnails(canvas);
+        }
+        super.dispatchDraw(canvas);
+    }
+
+    /**
+     * Draws the thumbnails of the pages without a view, where layoutPage() would put them.
+     */
+    private void drawPageThumbnails(Canvas canvas) {
+        if (mAdapter == null) {
+            return;
+        }
+        for (int position = 0; position < mPageCount; position++) {
+            if (findViewForPosition(position) != null) {
+                continue;
+            }
+            int width = mAdapter.getPageWidth(position);
+            int height = mAdapter.getPageHeight(position);
+            int offset = mPageOffsets[position];
+            int saveCount = canvas.save();
+            if (mOrientation == VERTICAL) {
+                canvas.translate((getWidth() - width) / 2, offset);
+            } else {
+                canvas.translate(offset, (getHeight() - height) / 2);
+            }
+            canvas.clipRect(0, 0, width, height);
+            mAdapter.onDrawPageThumbnail(canvas, position);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    /**
+     * Returns the page starting at or before {@code position} along the strip.
+     */
+    private int findPage(float position) {
+        int low = 0;
+        int high = mPageCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mPageOffsets[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void bindPage(int position) {
+        Adapter<ViewHolder> adapter = (Adapter<ViewHolder>) mAdapter;
+        int viewType = adapter.getItemViewType(position);
+        ArrayList<ViewHolder> pool = mRecycled.get(viewType);
+        ViewHolder holder;
+        if (pool != null && !pool.isEmpty()) {
+            holder = pool.remove(pool.size() - 1);
+        } else {
+            holder = adapter.onCreateViewHolder(this, viewType);
+            holder.mViewType = viewType;
+        }
+        holder.mPosition = position;
+        mBlockLayoutRequests = true;
+        try {
+            adapter.onBindViewHolder(holder, position);
+            LayoutParams lp = holder.itemView.getLayoutParams();
+            if (lp == null) {
+                lp = generateDefaultLayoutParams();
+            }
+            lp.width = mAdapter.getPageWidth(position);
+            lp.height = mAdapter.getPageHeight(position);
+            addViewInLayout(holder.itemView, -1, lp, true);
+        } finally {
+            mBlockLayoutRequests = false;
+        }
+        mAttached.add(holder);
+        measurePage(holder);
+        layoutPage(holder);
+    }
+
+    /**
+     * Measures a page to exactly the size its adapter reports.
+     */
+    private void measurePage(ViewHolder holder) {
+        holder.itemView.measure(
+                MeasureSpec.makeMeasureSpec(mAdapter.getPageWidth(holder.mPosition), MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(mAdapter.getPageHeight(holder.mPosition), MeasureSpec.EXACTLY));
+    }
+
+    private void layoutPage(ViewHolder holder) {
+        View view = holder.itemView;
+        int offset = mPageOffsets[holder.mPosition];
+        int width = view.getMeasuredWidth();
+        int height = view.getMeasuredHeight();
+        if (mOrientation == VERTICAL) {
+            int left = (getWidth() - width) / 2;
+            view.layout(left, offset, left + width, offset + height);
+        } else {
+            int top = (getHeight() - height) / 2;
+            view.layout(offset, top, offset + width, top + height);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void recycle(ViewHolder holder) {
+        removeViewInLayout(holder.itemView);
+        if (mAdapter != null) {
+            ((Adapter<ViewHolder>) mAdapter).onViewRecycled(holder);
+        }
+        holder.mPosition = ViewHolder.NO_POSITION;
+        ArrayList<ViewHolder> pool = mRecycled.get(holder.mViewType);
+        if (pool == null) {
+            pool = new ArrayList<>(MAX_RECYCLED_PER_TYPE);
+            mRecycled.put(holder.mViewType, pool);
+        }
+        if (pool.size() < MAX_RECYCLED_PER_TYPE) {
+            pool.add(holder);
+        }
+    }
+
+    private void recycleAll() {
+        for (int i = mAttached.size() - 1; i >= 0; i--) {
+            recycle(mAttached.remove(i));
+        }
+        mFirstPage = 0;
+        mLastPage = -1;
+    }
+
+    @Override
+    public void requestLayout() {
+        // binding a page must not lay out the whole hierarchy, the page is laid out in place
+        if (!mBlockLayoutRequests) {
+            super.requestLayout();
+        }
+    }
+
+    /**
+     * Provides the pages of a {@link ZoomPageStrip}. Page sizes are needed up front to lay
+     * out the strip, page views are only created for the pages around the viewport.
+     */
+    public abstract static class Adapter<VH extends ViewHolder> {
+        private final ArrayList<DataSetObserver> mObservers = new ArrayList<>();
+
+        public abstract int getPageCount();
+
+        /**
+         * Width of the page at scale 1, in pixels.
+         */
+        public abstract int getPageWidth(int position);
+
+        /**
+         * Height of the page at scale 1, in pixels.
+         */
+        public abstract int getPageHeight(int position);
+
+        public abstract VH onCreateViewHolder(ViewGroup parent, int viewType);
+
+        public abstract void onBindViewHolder(VH holder, int position);
+
+        public int getItemViewType(int position) {
+            return 0;
+        }
+
+        /**
+         * Draws the page at {@code position} while it has no view, into a canvas in page
+         * coordinates at scale 1, for {@link ZoomPageStrip#drawWholeContent(Canvas)}. Draws
+         * nothing by default, so only the bound pages show up.
+         */
+        public void onDrawPageThumbnail(Canvas canvas, int position) {
+        }
+
+        /**
+         * Called when a page leaves the strip, release what the page holds here.
+         */
+        public void onViewRecycled(VH holder) {
+        }
+
+        public void notifyDataSetChanged() {
+            for (int i = mObservers.size() - 1; i >= 0; i--) {
+                mObservers.get(i).onChanged();
+            }
+        }
+
+        void registerDataSetObserver(DataSetObserver observer) {
+            mObservers.add(observer);
+        }
+
+        void unregisterDataSetObserver(DataSetObserver observer) {
+            mObservers.remove(observer);
+        }
+    }
+
+    public static class ViewHolder {
+        public static final int NO_POSITION = -1;
+
+        public final View itemView;
+        int mPosition = NO_POSITION;
+        int mViewType;
+
+        public ViewHolder(View itemView) {
+            if (itemView == null) {
+                throw new IllegalArgumentException("itemView may not be null");
+            }
+            this.itemView = itemView;
+        }
+
+        /**
+         * Returns the bound page, or {@link #NO_POSITION} while recycled.
+         */
+        public int getPosition() {
+            return mPosition;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.zhanghao.zoomlayout;
+
+import java.util.ArrayList;
+
+/**
+ * Binds several {@link ZoomLayout}s to one shared {@link ViewportTransform}, e.g. for side
+ * by side comparisons.
+ * <p>
+ * The layout touched last owns the input: its gestures, flings and animations write the
+ * shared transform, and the other members stop their own animations and ignore touches while
+ * the owner is touched. Every write invalidates all members and each of them applies the
+ * transform once in its next draw, so they move in the same frame without listeners
+ * syncing them.
+ * <p>
+ * Members are expected to have the same size and a child of the same size, scroll bounds are
+ * taken from whichever member was laid out last.
+ */
+public class ZoomTransformGroup {
+    private final ViewportTransform mTransform = new ViewportTransform();
+    private final ArrayList<ZoomLayout> mMembers = new ArrayList<>();
+    private ZoomLayout mInputOwner;
+
+    public void add(ZoomLayout layout) {
+        layout.setTransformGroup(this);
+    }
+
+    public void remove(ZoomLayout layout) {
+        if (mMembers.contains(layout)) {
+            layout.setTransformGroup(null);
+        }
+    }
+
+    public int size() {
+        return mMembers.size();
+    }
+
+    ViewportTransform getTransform() {
+        return mTransform;
+    }
+
+    /**
+     * Called by a layout joining the group. The first member brings its transform along.
+     */
+    void onMemberAdded(ZoomLayout layout, ViewportTransform transform) {
+        if (mMembers.isEmpty()) {
+            mTransform.setScaleRange(transform.getMinScale(), transform.getMaxScale());
+            mTransform.set(transform.getScale(), transform.getTranslationX(), transform.getTranslationY());
+        }
+        mMembers.add(layout);
+    }
+
+    void onMemberRemoved(ZoomLayout layout) {
+        mMembers.remove(layout);
+        if (mInputOwner == layout) {
+            mInputOwner = null;
+        }
+    }
+
+    /**
+     * Makes {@code layout} the input owner, unless another member is being touched.
+     *
+     * @return false if the layout has to ignore the gesture
+     */
+    boolean claimInput(ZoomLayout layout) {
+        ZoomLayout owner = mInputOwner;
+        if (owner == layout) {
+            return true;
+        }
+        if (owner != null && owner.isTouching()) {
+            return false;
+        }
+        if (owner != null) {
+            owner.stopTransformAnimations();
+        }
+        mInputOwner = layout;
+        return true;
+    }
+
+    /**
+     * Returns the member whose fling drives the shared transform, or null.
+     */
+    ZoomLayout getInputOwner() {
+        return mInputOwner;
+    }
+
+    void applyToMembers() {
+        for (int i = 0, size = mMembers.size(); i < size; i++) {
+            mMembers.get(i).applyTransformInFrame();
+        }
+    }
+
+    void invalidateMembers() {
+        for (int i = 0, size = mMembers.size(); i < size; i++) {
+            mMembers.get(i).postInvalidateOnAnimation();
+        }
+    }
+}
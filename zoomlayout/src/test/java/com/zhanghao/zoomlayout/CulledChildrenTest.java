@@ -0,0 +1,57 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CulledChildrenTest {
+
+    private CulledChildren mChildren;
+
+    @Before
+    public void setUp() {
+        mChildren = new CulledChildren();
+        mChildren.reset(3, 3000, 1000);
+        mChildren.insert(0, 0, 0, 500, 500);
+        mChildren.insert(1, 1000, 0, 1500, 500);
+        mChildren.insert(2, 2000, 500, 2500, 1000);
+    }
+
+    @Test
+    public void onlyChildrenInTheViewportAreDrawn() {
+        assertTrue(mChildren.cull(900, 0, 1900, 1000, false));
+
+        assertEquals(1, mChildren.getVisibleCount());
+        assertEquals(1, mChildren.getDrawCount());
+        assertEquals(1, mChildren.getDrawIndex(0));
+        assertFalse(mChildren.cull(950, 0, 1950, 1000, false));
+    }
+
+    @Test
+    public void wholeContentDrawsCulledChildren() {
+        mChildren.cull(900, 0, 1900, 1000, false);
+
+        mChildren.setWholeContent(true);
+        assertEquals(3, mChildren.getDrawCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, mChildren.getDrawIndex(i));
+        }
+
+        mChildren.setWholeContent(false);
+        assertEquals(1, mChildren.getDrawCount());
+        assertEquals(1, mChildren.getDrawIndex(0));
+    }
+
+    @Test
+    public void visibleChildrenAreInChildOrder() {
+        mChildren.cull(0, 0, 3000, 1000, false);
+
+        assertEquals(3, mChildren.getDrawCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, mChildren.getDrawIndex(i));
+        }
+        assertEquals(2, mChildren.findTopmost(2100, 600));
+        assertEquals(-1, mChildren.findTopmost(700, 700));
+    }
+}
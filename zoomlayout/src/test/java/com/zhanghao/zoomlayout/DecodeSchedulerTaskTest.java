@@ -0,0 +1,94 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Test;
+
+import java.util.concurrent.PriorityBlockingQueue;
+
+import static org.junit.Assert.*;
+
+public class DecodeSchedulerTaskTest {
+
+    @Test
+    public void tasksRunByPriorityThenInSubmitOrder() {
+        PriorityBlockingQueue<DecodeScheduler.Task<?>> queue = new PriorityBlockingQueue<>();
+        NamedTask prefetch = task("prefetch", DecodeScheduler.PRIORITY_PREFETCH, 0);
+        NamedTask near = task("near", DecodeScheduler.PRIORITY_NEAR, 1);
+        NamedTask visible1 = task("visible1", DecodeScheduler.PRIORITY_VISIBLE, 2);
+        NamedTask visible2 = task("visible2", DecodeScheduler.PRIORITY_VISIBLE, 3);
+        queue.add(prefetch);
+        queue.add(visible2);
+        queue.add(near);
+        queue.add(visible1);
+
+        assertSame(visible1, queue.poll());
+        assertSame(visible2, queue.poll());
+        assertSame(near, queue.poll());
+        assertSame(prefetch, queue.poll());
+    }
+
+    @Test
+    public void cancelledTaskIsNotDelivered() {
+        NamedTask task = task("tile", DecodeScheduler.PRIORITY_VISIBLE, 0);
+        task.execute();
+        task.mCancelled = true;
+        task.deliver();
+        assertNull(task.mDelivered);
+
+        task.mCancelled = false;
+        task.execute();
+        task.deliver();
+        assertEquals("tile", task.mDelivered);
+    }
+
+    @Test
+    public void failingTaskIsDeliveredWithoutResult() {
+        NamedTask task = task("tile", DecodeScheduler.PRIORITY_VISIBLE, 0);
+        task.execute();
+        task.deliver();
+        assertEquals("tile", task.mDelivered);
+
+        task.mFailure = new OutOfMemoryError("tile bitmap");
+        task.execute();
+        task.deliver();
+        assertNull(task.mDelivered);
+
+        task.mFailure = new IllegalStateException("decoder recycled");
+        task.mDelivered = "none";
+        task.execute();
+        task.deliver();
+        assertNull(task.mDelivered);
+    }
+
+    private static NamedTask task(String name, int priority, long sequence) {
+        NamedTask task = new NamedTask(name);
+        task.mPriority = priority;
+        task.mSequence = sequence;
+        return task;
+    }
+
+    private static class NamedTask extends DecodeScheduler.Task<String> {
+        private final String mName;
+        String mDelivered;
+        Throwable mFailure;
+
+        NamedTask(String name) {
+            mName = name;
+        }
+
+        @Override
+        protected String doInBackground() {
+            if (mFailure instanceof RuntimeException) {
+                throw (RuntimeException) mFailure;
+            }
+            if (mFailure instanceof Error) {
+                throw (Error) mFailure;
+            }
+            return mName;
+        }
+
+        @Override
+        protected void onResult(String result) {
+            mDelivered = result;
+        }
+    }
+}
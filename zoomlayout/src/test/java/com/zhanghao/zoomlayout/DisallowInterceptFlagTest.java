@@ -0,0 +1,47 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DisallowInterceptFlagTest {
+
+    /**
+     * Behaves like {@code ViewGroup.requestDisallowInterceptTouchEvent()}: requests that do
+     * not change its flag are not passed on to the parent.
+     */
+    private static class FakeViewGroup implements DisallowInterceptFlag.Target {
+        boolean mFlag;
+        int mParentRequests;
+
+        @Override
+        public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+            if (mFlag == disallowIntercept) {
+                return;
+            }
+            mFlag = disallowIntercept;
+            if (disallowIntercept) {
+                mParentRequests++;
+            }
+        }
+    }
+
+    @Test
+    public void childRequestReachesTheParentInEveryGesture() {
+        FakeViewGroup group = new FakeViewGroup();
+        DisallowInterceptFlag flag = new DisallowInterceptFlag(group);
+
+        for (int gesture = 1; gesture <= 2; gesture++) {
+            // ACTION_DOWN
+            flag.reset();
+            assertFalse(flag.isSet());
+            // e.g. a seek bar starts dragging
+            flag.request(true);
+            assertTrue(flag.isSet());
+            assertEquals("parent requests after gesture " + gesture, gesture, group.mParentRequests);
+            // ACTION_UP
+            flag.reset();
+            assertFalse(group.mFlag);
+        }
+    }
+}
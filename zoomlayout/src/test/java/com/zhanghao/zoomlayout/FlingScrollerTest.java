@@ -0,0 +1,87 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlingScrollerTest {
+
+    private static final long FRAME = 16;
+
+    @Test
+    public void flingDecaysAndStopsAtPredictedPosition() {
+        FlingScroller scroller = new FlingScroller();
+        scroller.fling(0, 0, 0, 3000, -1500, -10000, 10000, -10000, 10000, 0);
+        float finalX = scroller.getFinalX();
+        float finalY = scroller.getFinalY();
+
+        float lastX = 0;
+        long time = 0;
+        while (scroller.computeScrollOffset(time += FRAME)) {
+            assertTrue("fling must not reverse", scroller.getCurrX() >= lastX);
+            lastX = scroller.getCurrX();
+        }
+        assertTrue(scroller.isFinished());
+        assertEquals(finalX, scroller.getCurrX(), 0.5f);
+        assertEquals(finalY, scroller.getCurrY(), 0.5f);
+        // both axes move along the release direction
+        assertEquals(-0.5f, scroller.getCurrY() / scroller.getCurrX(), 1e-3f);
+    }
+
+    @Test
+    public void fasterFlingTravelsFurther() {
+        FlingScroller scroller = new FlingScroller();
+        scroller.fling(0, 0, 0, 1000, 0, -100000, 100000, 0, 0, 0);
+        float slow = scroller.getFinalX();
+        scroller.fling(0, 0, 0, 4000, 0, -100000, 100000, 0, 0, 0);
+        assertTrue(scroller.getFinalX() > slow);
+    }
+
+    @Test
+    public void flingStopsAtBoundWithoutOverscroll() {
+        FlingScroller scroller = new FlingScroller();
+        scroller.fling(0, 0, 0, 8000, 0, -200, 200, 0, 0, 0);
+        long time = 0;
+        while (scroller.computeScrollOffset(time += FRAME)) {
+            assertTrue(scroller.getCurrX() <= 200);
+        }
+        assertEquals(200, scroller.getCurrX(), 0);
+    }
+
+    @Test
+    public void flingOvershootsAndSpringsBack() {
+        FlingScroller scroller = new FlingScroller();
+        scroller.fling(0, 0, 0, 8000, 0, -200, 200, 0, 0, 100);
+        float max = 0;
+        long time = 0;
+        while (scroller.computeScrollOffset(time += FRAME)) {
+            max = Math.max(max, scroller.getCurrX());
+            assertTrue(scroller.getCurrX() <= 300);
+        }
+        assertTrue("should overshoot the bound", max > 200);
+        assertEquals(200, scroller.getCurrX(), 0);
+    }
+
+    @Test
+    public void springBackReturnsIntoBounds() {
+        FlingScroller scroller = new FlingScroller();
+        assertFalse(scroller.springBack(0, 10, 10, 0, 100, 0, 100));
+        assertTrue(scroller.springBack(0, -80, 150, 0, 100, 0, 100));
+        long time = 0;
+        while (scroller.computeScrollOffset(time += FRAME)) {
+            assertTrue(time < 2000);
+        }
+        assertEquals(0, scroller.getCurrX(), 0);
+        assertEquals(100, scroller.getCurrY(), 0);
+    }
+
+    @Test
+    public void abortStopsImmediately() {
+        FlingScroller scroller = new FlingScroller();
+        scroller.fling(0, 0, 0, 3000, 3000, -10000, 10000, -10000, 10000, 0);
+        scroller.computeScrollOffset(FRAME);
+        scroller.abortAnimation();
+        assertTrue(scroller.isFinished());
+        assertFalse(scroller.computeScrollOffset(2 * FRAME));
+    }
+}
@@ -0,0 +1,86 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameStatsRecorderTest {
+
+    private static final long MS = 1000000;
+    private static final long FRAME = 16 * MS;
+    private static final float DELTA = 0.01f;
+
+    private FrameStatsRecorder mRecorder;
+    private final GestureFrameStats mStats = new GestureFrameStats();
+
+    @Before
+    public void setUp() {
+        mRecorder = new FrameStatsRecorder();
+        mRecorder.setFrameIntervalNanos(FRAME);
+    }
+
+    @Test
+    public void steadyFramesAreNotDropped() {
+        mRecorder.begin(GestureFrameStats.GESTURE_PAN, 0);
+        for (int i = 0; i <= 60; i++) {
+            mRecorder.onFrame(i * FRAME);
+        }
+        mRecorder.end(60 * FRAME, mStats);
+
+        assertEquals(GestureFrameStats.GESTURE_PAN, mStats.getGesture());
+        assertEquals(61, mStats.getFrameCount());
+        assertEquals(0, mStats.getDroppedFrames());
+        assertEquals(16.5f, mStats.getFrameDurationPercentile(99), DELTA);
+        assertFalse(mRecorder.isActive());
+    }
+
+    @Test
+    public void longFramesCountMissedVsyncs() {
+        mRecorder.begin(GestureFrameStats.GESTURE_FLING, 0);
+        long time = 0;
+        mRecorder.onFrame(time);
+        for (int i = 0; i < 98; i++) {
+            time += FRAME;
+            mRecorder.onFrame(time);
+        }
+        // one frame took three vsyncs
+        time += 3 * FRAME;
+        mRecorder.onFrame(time);
+        mRecorder.end(time, mStats);
+
+        assertEquals(2, mStats.getDroppedFrames());
+        assertEquals(16.5f, mStats.getFrameDurationPercentile(50), DELTA);
+        assertEquals(48f, mStats.getMaxFrameDuration(), DELTA);
+        assertEquals(48f, mStats.getFrameDurationPercentile(99), 0.5f);
+    }
+
+    @Test
+    public void inputLatencyIsMeasuredFromTheFirstPendingEvent() {
+        mRecorder.begin(GestureFrameStats.GESTURE_PINCH, 0);
+        mRecorder.onInput(2 * MS);
+        mRecorder.onInput(6 * MS);
+        mRecorder.onTransformApplied(12 * MS);
+        mRecorder.onInput(20 * MS);
+        mRecorder.onTransformApplied(24 * MS);
+        // nothing pending, not counted
+        mRecorder.onTransformApplied(40 * MS);
+        mRecorder.end(40 * MS, mStats);
+
+        assertEquals(3, mStats.getInputCount());
+        assertEquals(7f, mStats.getAverageInputLatency(), DELTA);
+        assertEquals(10f, mStats.getMaxInputLatency(), DELTA);
+    }
+
+    @Test
+    public void eventsOutsideAGestureAreIgnored() {
+        mRecorder.onFrame(FRAME);
+        mRecorder.onInput(FRAME);
+        mRecorder.begin(GestureFrameStats.GESTURE_DOUBLE_TAP, 0);
+        mRecorder.end(FRAME, mStats);
+
+        assertEquals(0, mStats.getFrameCount());
+        assertEquals(0, mStats.getInputCount());
+        assertEquals(0f, mStats.getFrameDurationPercentile(90), DELTA);
+    }
+}
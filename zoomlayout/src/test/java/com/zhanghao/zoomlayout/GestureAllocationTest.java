@@ -0,0 +1,158 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs a scripted pan, fling, pinch and double-tap through {@link GestureCore}, calling it
+ * the way {@link ZoomLayout} does per touch event and frame, and checks that a warm pipeline
+ * does not allocate.
+ */
+public class GestureAllocationTest {
+
+    private static final int WARM_UP_RUNS = 20;
+    private static final int MEASURED_RUNS = 5;
+
+    private ViewportTransform mTransform;
+    private GestureCore mGestures;
+    private final float[] mPoints = new float[4];
+    private final float[] mValues = new float[9];
+    private int mAppliedFrames;
+    private int mFlingFrames;
+
+    @Before
+    public void setUp() {
+        mTransform = new ViewportTransform();
+        mTransform.setScaleRange(GestureCore.MIN_SCALE, GestureCore.MAX_SCALE);
+        mTransform.setContentBounds(0, 0, 1080, 1920);
+        mTransform.setScrollBounds(0, 0, 1080, 1920, 100);
+        mGestures = new GestureCore(mTransform, new FlingScroller());
+        mGestures.setTouchSlop(8);
+        mGestures.setMaxFlingVelocity(8000);
+    }
+
+    @Test
+    public void scriptedGestureMovesTheContent() {
+        runGesture();
+
+        // every part of the script wrote the transform, none was refused by the rules
+        assertEquals(60 + 40 + 24, mAppliedFrames - mFlingFrames);
+        assertTrue("fling frames " + mFlingFrames, mFlingFrames > 10);
+        assertEquals(1 + GestureCore.DOUBLE_TAP_SCALE_INCREASE, mTransform.getScale(), 1e-3f);
+    }
+
+    @Test
+    public void scriptedGestureDoesNotAllocate() {
+        com.sun.management.ThreadMXBean bean = allocationBean();
+        Assume.assumeTrue(bean != null);
+
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            runGesture();
+        }
+        long threadId = Thread.currentThread().getId();
+        // the JIT may still allocate on this thread while it swaps in compiled code, so the
+        // best of a few runs is taken
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS && allocated > 0; i++) {
+            long before = bean.getThreadAllocatedBytes(threadId);
+            runGesture();
+            allocated = Math.min(allocated, bean.getThreadAllocatedBytes(threadId) - before);
+        }
+
+        assertEquals("bytes allocated by a warm gesture", 0, allocated);
+    }
+
+    private void runGesture() {
+        mTransform.set(2, -540, -960);
+        mAppliedFrames = 0;
+        mFlingFrames = 0;
+        long time = 0;
+
+        // pan: ACTION_DOWN, then one ACTION_MOVE per frame past the slop
+        mGestures.stopFling();
+        mGestures.down(540, 960);
+        float x = 540;
+        float y = 960;
+        for (int i = 0; i < 60; i++) {
+            x -= 7.5f;
+            y += 12.25f;
+            time += 16;
+            move(x, y);
+        }
+
+        // fling: ACTION_UP with the tracked velocity, one scroller step per frame from
+        // computeScroll()
+        assertEquals(GestureCore.RELEASE_FLING, mGestures.release(time, -450, 750));
+        for (time += 16; mGestures.computeFling(time); time += 16) {
+            mFlingFrames++;
+            applyFrame();
+        }
+
+        // pinch: two fingers go down, then one scale step per ACTION_MOVE around a
+        // moving focus
+        mGestures.stopFling();
+        mGestures.down(440, 960);
+        mGestures.beginScale();
+        for (int i = 0; i < 40; i++) {
+            if (mGestures.scale(1.01f, 540 + i, 960 - i)) {
+                applyFrame();
+            }
+            move(440 - i, 960);
+        }
+        assertEquals(GestureCore.RELEASE_NONE, mGestures.release(time, 0, 0));
+
+        // double tap: animated scale around the tap point, from the initial scale
+        mTransform.set(1, 0, 0);
+        assertTrue(mGestures.startScaleAnimation(300, 400));
+        for (int frame = 1; frame <= 24; frame++) {
+            if (mGestures.animateScale(frame / 24f)) {
+                applyFrame();
+            }
+        }
+    }
+
+    /**
+     * What {@code ZoomLayout.onTouchEvent()} does for an ACTION_MOVE of the first finger.
+     */
+    private void move(float x, float y) {
+        if (mGestures.shouldStartDrag(x, y)) {
+            mGestures.startDrag();
+        }
+        if (mGestures.isDragging() && mGestures.pan(x - mGestures.getLastX(), y - mGestures.getLastY())) {
+            applyFrame();
+        }
+        mGestures.setLastPosition(x, y);
+    }
+
+    /**
+     * What a frame does with the transform: read it back and map the viewport.
+     */
+    private void applyFrame() {
+        mAppliedFrames++;
+        mTransform.getValues(mValues);
+        mPoints[0] = 0;
+        mPoints[1] = 0;
+        mPoints[2] = 1080;
+        mPoints[3] = 1920;
+        mTransform.invertPoints(mPoints);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+        return sunBean;
+    }
+}
@@ -0,0 +1,30 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GestureMathTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void deltaInsideRangeIsConsumed() {
+        assertEquals(-30, GestureMath.consumeWithin(-100, -30, -500, 0), DELTA);
+        assertEquals(40, GestureMath.consumeWithin(-100, 40, -500, 0), DELTA);
+    }
+
+    @Test
+    public void deltaIsCutAtTheBound() {
+        assertEquals(-20, GestureMath.consumeWithin(-480, -50, -500, 0), DELTA);
+        assertEquals(10, GestureMath.consumeWithin(-10, 25, -500, 0), DELTA);
+        assertEquals(0, GestureMath.consumeWithin(0, 25, -500, 0), DELTA);
+    }
+
+    @Test
+    public void valueOutsideRangeOnlyMovesBack() {
+        assertEquals(0, GestureMath.consumeWithin(30, 10, -500, 0), DELTA);
+        assertEquals(-10, GestureMath.consumeWithin(30, -10, -500, 0), DELTA);
+        assertEquals(-530, GestureMath.consumeWithin(30, -600, -500, 0), DELTA);
+    }
+}
@@ -0,0 +1,201 @@
+package com.zhanghao.zoomlayout;
+
+import android.view.MotionEvent;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class GestureTraceReplayTest {
+
+    private static final float DELTA = 1e-3f;
+    private static final float TOUCH_SLOP = 8;
+    private static final float SCROLL_SLOP = 100;
+    private static final float MAX_FLING_VELOCITY = 8000;
+    private static final long EVENT_BUDGET_NANOS = 2000000;
+    private static final int WARM_UP_RUNS = 20;
+    private static final int MEASURED_RUNS = 5;
+
+    private final int[] mIds = {0, 1};
+    private final float[] mXs = new float[2];
+    private final float[] mYs = new float[2];
+
+    @Test
+    public void traceSurvivesWriteAndRead() throws IOException {
+        GestureCore gestures = gestures(1080, 1920, 2000, 3000, 1.5f, -20, -40);
+        gestures.getTransform().setContentBounds(10, 20, 2000, 3000);
+        gestures.setFlingSpringBackEnabled(true);
+        GestureTrace trace = new GestureTrace(1080, 1920, gestures);
+        add(trace, 1000, MotionEvent.ACTION_DOWN, 0, 100.125f, 200.5f);
+        add(trace, 1008, MotionEvent.ACTION_MOVE, 0, 95.25f, 210f);
+        add(trace, 1012, MotionEvent.ACTION_POINTER_DOWN, 1, 95.25f, 210f, 400f, 600f);
+        add(trace, 1020, MotionEvent.ACTION_MOVE, 0, 90f, 205f, 410f, 620.875f);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.writeTo(out);
+        GestureTrace read = GestureTrace.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(1080, read.getViewportWidth());
+        assertEquals(3000, read.getContentHeight(), DELTA);
+        assertEquals(1.5f, read.getScale(), DELTA);
+        assertEquals(-40, read.getTranslationY(), DELTA);
+        assertEquals(4, read.getEventCount());
+        GestureCore restored = new GestureCore(new ViewportTransform(), new FlingScroller());
+        read.restore(restored);
+        ViewportTransform transform = restored.getTransform();
+        assertEquals(10, transform.getContentLeft(), DELTA);
+        assertEquals(20, transform.getContentTop(), DELTA);
+        assertEquals(2000, transform.getBoundRight(), DELTA);
+        assertEquals(3000, transform.getBoundBottom(), DELTA);
+        assertEquals(SCROLL_SLOP, transform.getBoundSlop(), DELTA);
+        assertEquals(0.5f, transform.getMinScale(), DELTA);
+        assertEquals(4f, transform.getMaxScale(), DELTA);
+        assertEquals(-20, transform.getTranslationX(), DELTA);
+        assertEquals(TOUCH_SLOP, restored.getTouchSlop(), DELTA);
+        assertEquals(MAX_FLING_VELOCITY, restored.getMaxFlingVelocity(), DELTA);
+        assertTrue(restored.isFlingSpringBackEnabled());
+        GestureTrace.Reader reader = read.newReader();
+        assertTrue(reader.next());
+        assertEquals(1000, reader.getEventTime());
+        assertEquals(MotionEvent.ACTION_DOWN, reader.getActionMasked());
+        assertEquals(100.125f, reader.getX(0), DELTA);
+        assertTrue(reader.next());
+        assertTrue(reader.next());
+        assertEquals(MotionEvent.ACTION_POINTER_DOWN, reader.getActionMasked());
+        assertEquals(1, reader.getActionIndex());
+        assertEquals(2, reader.getPointerCount());
+        assertEquals(1, reader.getPointerId(1));
+        assertTrue(reader.next());
+        assertEquals(1020, reader.getEventTime());
+        assertEquals(90f, reader.getX(0), DELTA);
+        assertEquals(620.875f, reader.getY(1), DELTA);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void oneFingerMovesAreCompact() {
+        GestureTrace trace = panTrace(30, 10, 8, 300);
+
+        assertTrue("bytes per event " + (float) trace.getEventBytes() / trace.getEventCount(),
+                trace.getEventBytes() <= trace.getEventCount() * 8);
+    }
+
+    @Test
+    public void slowPanMovesContentByTheFingerDistance() {
+        GestureTraceReplayer replayer = replayer(panTrace(30, 10, 8, 300));
+        replayer.replay();
+
+        assertEquals(-300, replayer.getTransform().getTranslationX(), DELTA);
+        assertEquals(-300, replayer.getTransform().getTranslationY(), DELTA);
+    }
+
+    @Test
+    public void pinchScalesAroundItsFocus() {
+        GestureTrace trace = new GestureTrace(1000, 1000, gestures(1000, 1000, 1000, 1000, 1, 0, 0));
+        add(trace, 0, MotionEvent.ACTION_DOWN, 0, 400, 500);
+        add(trace, 10, MotionEvent.ACTION_POINTER_DOWN, 1, 400, 500, 600, 500);
+        for (int i = 1; i <= 10; i++) {
+            add(trace, 10 + i * 8, MotionEvent.ACTION_MOVE, 0, 400 - i * 10, 500, 600 + i * 10, 500);
+        }
+        add(trace, 100, MotionEvent.ACTION_POINTER_UP, 1, 300, 500, 700, 500);
+        add(trace, 110, MotionEvent.ACTION_UP, 0, 300, 500);
+
+        GestureTraceReplayer replayer = replayer(trace);
+        replayer.replay();
+
+        assertEquals(2f, replayer.getTransform().getScale(), DELTA);
+        // the content under the focus (500, 500) stays there
+        assertEquals(-500, replayer.getTransform().getTranslationX(), DELTA);
+        assertEquals(-500, replayer.getTransform().getTranslationY(), DELTA);
+    }
+
+    @Test
+    public void fastReleaseFlingsAndReplaysDeterministically() {
+        GestureTrace trace = panTrace(10, 30, 8, 0);
+        GestureTraceReplayer replayer = replayer(trace);
+        replayer.replay();
+        ViewportTransform transform = replayer.getTransform();
+        float translationX = transform.getTranslationX();
+
+        assertTrue("fling continues past the release", translationX < -300);
+        assertTrue(translationX >= transform.getMinTranslationX());
+
+        replayer.replay();
+        assertEquals(translationX, transform.getTranslationX(), 0);
+    }
+
+    @Test
+    public void warmReplayStaysWithinBudget() {
+        GestureTraceReplayer replayer = replayer(panTrace(60, 12, 8, 0));
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            replayer.replay();
+        }
+        // timing and JIT noise is filtered by taking the best of a few runs
+        long maxEventNanos = Long.MAX_VALUE;
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            replayer.replay();
+            maxEventNanos = Math.min(maxEventNanos, replayer.getMaxEventNanos());
+            allocated = Math.min(allocated, replayer.getAllocatedBytes());
+        }
+
+        assertTrue("slowest event took " + maxEventNanos + " ns", maxEventNanos <= EVENT_BUDGET_NANOS);
+        // -1 when the JVM cannot measure allocations
+        assertTrue("replay allocated " + allocated + " bytes", allocated <= 0);
+    }
+
+    private GestureTraceReplayer replayer(GestureTrace trace) {
+        return new GestureTraceReplayer(trace);
+    }
+
+    /**
+     * The state of a {@link ZoomLayout} of the viewport size whose child has the content
+     * size, at the time a trace starts.
+     */
+    private static GestureCore gestures(int width, int height, int contentWidth, int contentHeight,
+                                        float scale, float translationX, float translationY) {
+        ViewportTransform transform = new ViewportTransform();
+        transform.setScaleRange(GestureCore.MIN_SCALE, GestureCore.MAX_SCALE);
+        transform.setContentBounds(0, 0, contentWidth, contentHeight);
+        transform.setScrollBounds(0, 0, Math.max(width, contentWidth), Math.max(height, contentHeight), SCROLL_SLOP);
+        transform.set(scale, translationX, translationY);
+        GestureCore gestures = new GestureCore(transform, new FlingScroller());
+        gestures.setTouchSlop(TOUCH_SLOP);
+        gestures.setMaxFlingVelocity(MAX_FLING_VELOCITY);
+        return gestures;
+    }
+
+    /**
+     * Drags up and left by {@code step} per move from (800, 800), then holds still for
+     * {@code holdMs} before lifting.
+     */
+    private GestureTrace panTrace(int moves, float step, long intervalMs, long holdMs) {
+        // the content is zoomed to twice the viewport, so it can pan by 1000 px
+        GestureTrace trace = new GestureTrace(1000, 1000, gestures(1000, 1000, 1000, 1000, 2, 0, 0));
+        float x = 800;
+        float y = 800;
+        long time = 0;
+        add(trace, time, MotionEvent.ACTION_DOWN, 0, x, y);
+        for (int i = 0; i < moves; i++) {
+            x -= step;
+            y -= step;
+            time += intervalMs;
+            add(trace, time, MotionEvent.ACTION_MOVE, 0, x, y);
+        }
+        add(trace, time + holdMs, MotionEvent.ACTION_UP, 0, x, y);
+        return trace;
+    }
+
+    private void add(GestureTrace trace, long time, int action, int actionIndex, float... xy) {
+        int pointerCount = xy.length / 2;
+        for (int i = 0; i < pointerCount; i++) {
+            mXs[i] = xy[i * 2];
+            mYs[i] = xy[i * 2 + 1];
+        }
+        trace.add(time, action, actionIndex, pointerCount, mIds, mXs, mYs);
+    }
+}
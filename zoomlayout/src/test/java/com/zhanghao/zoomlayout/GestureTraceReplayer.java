@@ -0,0 +1,216 @@
+package com.zhanghao.zoomlayout;
+
+import android.view.MotionEvent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Replays a {@link GestureTrace} headless through the {@link GestureCore} rules
+ * {@link ZoomLayout} applies, starting from the transform, bounds and gesture settings
+ * recorded in the trace.
+ * <p>
+ * Only the platform detectors are stood in for: the scale factor of a pinch is the change of
+ * the span between the first two fingers, like {@code ScaleGestureDetector}, and the release
+ * velocity is taken over the last {@value #VELOCITY_WINDOW_MS} ms of moves, like
+ * {@code VelocityTracker}.
+ * <p>
+ * Events and frames are interleaved on a virtual clock following the recorded event times,
+ * so a replay is deterministic. Per event processing time and the bytes allocated by the
+ * whole replay are measured.
+ */
+class GestureTraceReplayer {
+    static final long FRAME_MS = 16;
+    private static final int VELOCITY_WINDOW_MS = 100;
+    private static final int VELOCITY_SAMPLES = 16;
+
+    private final GestureTrace mTrace;
+    private final GestureTrace.Reader mReader;
+    private final ViewportTransform mTransform = new ViewportTransform();
+    private final FlingScroller mScroller = new FlingScroller();
+    private final GestureCore mGestures = new GestureCore(mTransform, mScroller);
+    private final long[] mSampleTimes = new long[VELOCITY_SAMPLES];
+    private final float[] mSampleX = new float[VELOCITY_SAMPLES];
+    private final float[] mSampleY = new float[VELOCITY_SAMPLES];
+    private int mSampleCount;
+    private float mVelocityX;
+    private float mVelocityY;
+
+    private float mLastSpan;
+    private long mNextFrame;
+
+    private int mEventCount;
+    private long mMaxEventNanos;
+    private long mTotalEventNanos;
+    private long mAllocatedBytes = -1;
+
+    GestureTraceReplayer(GestureTrace trace) {
+        mTrace = trace;
+        mReader = trace.newReader();
+    }
+
+    ViewportTransform getTransform() {
+        return mTransform;
+    }
+
+    /**
+     * Replays the whole trace from the recorded initial state and runs frames until the
+     * content comes to rest.
+     */
+    void replay() {
+        com.sun.management.ThreadMXBean bean = allocationBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = bean != null ? bean.getThreadAllocatedBytes(threadId) : 0;
+
+        mTrace.restore(mGestures);
+        mReader.reset();
+        mEventCount = 0;
+        mMaxEventNanos = 0;
+        mTotalEventNanos = 0;
+        mNextFrame = -1;
+        while (mReader.next()) {
+            long time = mReader.getEventTime();
+            runFramesUntil(time);
+            long start = System.nanoTime();
+            onEvent(time);
+            long elapsed = System.nanoTime() - start;
+            mEventCount++;
+            mTotalEventNanos += elapsed;
+            mMaxEventNanos = Math.max(mMaxEventNanos, elapsed);
+            if (mNextFrame < 0) {
+                mNextFrame = time + FRAME_MS;
+            }
+        }
+        while (!mScroller.isFinished()) {
+            mGestures.computeFling(mNextFrame);
+            mNextFrame += FRAME_MS;
+        }
+
+        mAllocatedBytes = bean != null ? bean.getThreadAllocatedBytes(threadId) - allocatedBefore : -1;
+    }
+
+    int getEventCount() {
+        return mEventCount;
+    }
+
+    long getMaxEventNanos() {
+        return mMaxEventNanos;
+    }
+
+    long getAverageEventNanos() {
+        return mEventCount == 0 ? 0 : mTotalEventNanos / mEventCount;
+    }
+
+    /**
+     * Bytes allocated by the last replay, or -1 if the JVM cannot tell.
+     */
+    long getAllocatedBytes() {
+        return mAllocatedBytes;
+    }
+
+    private void runFramesUntil(long time) {
+        while (mNextFrame >= 0 && mNextFrame <= time) {
+            mGestures.computeFling(mNextFrame);
+            mNextFrame += FRAME_MS;
+        }
+    }
+
+    /**
+     * Follows {@code ZoomLayout.onTouchEvent()}.
+     */
+    private void onEvent(long time) {
+        GestureTrace.Reader ev = mReader;
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN: {
+                mGestures.stopFling();
+                mGestures.down(ev.getX(0), ev.getY(0));
+                mSampleCount = 0;
+                addSample(time, ev.getX(0), ev.getY(0));
+                break;
+            }
+            case MotionEvent.ACTION_POINTER_DOWN: {
+                if (ev.getPointerCount() == 2) {
+                    mGestures.beginScale();
+                    mLastSpan = span(ev);
+                }
+                break;
+            }
+            case MotionEvent.ACTION_MOVE: {
+                if (mGestures.isScaling() && ev.getPointerCount() >= 2) {
+                    float span = span(ev);
+                    if (mLastSpan > 0) {
+                        mGestures.scale(span / mLastSpan,
+                                (ev.getX(0) + ev.getX(1)) / 2, (ev.getY(0) + ev.getY(1)) / 2);
+                    }
+                    mLastSpan = span;
+                }
+                float x = ev.getX(0);
+                float y = ev.getY(0);
+                addSample(time, x, y);
+                if (mGestures.shouldStartDrag(x, y)) {
+                    mGestures.startDrag();
+                }
+                if (mGestures.isDragging()) {
+                    mGestures.pan(x - mGestures.getLastX(), y - mGestures.getLastY());
+                }
+                mGestures.setLastPosition(x, y);
+                break;
+            }
+            case MotionEvent.ACTION_UP: {
+                computeVelocity(time);
+                if (mGestures.isFling(mVelocityX, mVelocityY)) {
+                    mGestures.stopFling();
+                }
+                mGestures.release(time, mVelocityX, mVelocityY);
+                break;
+            }
+            case MotionEvent.ACTION_CANCEL:
+                mGestures.cancel();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void computeVelocity(long time) {
+        mVelocityX = 0;
+        mVelocityY = 0;
+        int last = (mSampleCount - 1) % VELOCITY_SAMPLES;
+        for (int i = mSampleCount - 1; i >= 0 && i >= mSampleCount - VELOCITY_SAMPLES; i--) {
+            int index = i % VELOCITY_SAMPLES;
+            long dt = mSampleTimes[last] - mSampleTimes[index];
+            if (time - mSampleTimes[index] > VELOCITY_WINDOW_MS) {
+                break;
+            }
+            if (dt > 0) {
+                mVelocityX = (mSampleX[last] - mSampleX[index]) * 1000 / dt;
+                mVelocityY = (mSampleY[last] - mSampleY[index]) * 1000 / dt;
+            }
+        }
+    }
+
+    private void addSample(long time, float x, float y) {
+        int index = mSampleCount % VELOCITY_SAMPLES;
+        mSampleTimes[index] = time;
+        mSampleX[index] = x;
+        mSampleY[index] = y;
+        mSampleCount++;
+    }
+
+    private static float span(GestureTrace.Reader ev) {
+        return GestureMath.distance(ev.getX(0), ev.getY(0), ev.getX(1), ev.getY(1));
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+        return sunBean;
+    }
+}
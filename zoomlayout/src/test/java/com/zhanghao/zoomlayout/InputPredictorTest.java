@@ -0,0 +1,55 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InputPredictorTest {
+
+    private static final float DELTA = 1e-3f;
+
+    private final InputPredictor mPredictor = new InputPredictor();
+    private final float[] mOut = new float[2];
+
+    @Test
+    public void steadyDragIsExtrapolated() {
+        for (int i = 0; i <= 4; i++) {
+            mPredictor.add(i * 8, 100 + i * 8, 200 - i * 4);
+        }
+
+        assertTrue(mPredictor.predict(8, 100, mOut));
+        assertEquals(140, mOut[0], DELTA);
+        assertEquals(180, mOut[1], DELTA);
+    }
+
+    @Test
+    public void predictionIsLimitedToMaxDistance() {
+        for (int i = 0; i <= 4; i++) {
+            mPredictor.add(i * 8, i * 80, 0);
+        }
+
+        assertTrue(mPredictor.predict(8, 20, mOut));
+        assertEquals(340, mOut[0], DELTA);
+    }
+
+    @Test
+    public void stoppingFingerIsNotPredicted() {
+        mPredictor.add(0, 0, 0);
+        mPredictor.add(8, 40, 0);
+        mPredictor.add(16, 80, 0);
+        mPredictor.add(24, 82, 0);
+
+        assertFalse(mPredictor.predict(8, 100, mOut));
+        assertEquals(82, mOut[0], DELTA);
+    }
+
+    @Test
+    public void singleOrStaleSampleIsNotPredicted() {
+        mPredictor.add(0, 10, 10);
+        assertFalse(mPredictor.predict(8, 100, mOut));
+
+        mPredictor.add(200, 50, 50);
+        assertFalse(mPredictor.predict(8, 100, mOut));
+        assertEquals(50, mOut[0], DELTA);
+    }
+}
@@ -0,0 +1,32 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InteractionStateTest {
+
+    @Test
+    public void pinchWinsOverDragAndInputOverMotion() {
+        assertEquals(InteractionState.SCALING, InteractionState.derive(true, true, true, true));
+        assertEquals(InteractionState.DRAGGING, InteractionState.derive(false, true, true, false));
+        assertEquals(InteractionState.FLINGING, InteractionState.derive(false, false, true, true));
+        assertEquals(InteractionState.ANIMATING, InteractionState.derive(false, false, false, true));
+        assertEquals(InteractionState.IDLE, InteractionState.derive(false, false, false, false));
+    }
+
+    @Test
+    public void onlyChangesAreReported() {
+        InteractionState state = new InteractionState();
+        assertTrue(state.isIdle());
+
+        assertTrue(state.moveTo(InteractionState.DRAGGING, 100));
+        assertFalse(state.moveTo(InteractionState.DRAGGING, 150));
+        assertEquals(100, state.getSince());
+
+        assertTrue(state.moveTo(InteractionState.FLINGING, 200));
+        assertTrue(state.moveTo(InteractionState.IDLE, 900));
+        assertTrue(state.isIdle());
+        assertEquals(900, state.getSince());
+    }
+}
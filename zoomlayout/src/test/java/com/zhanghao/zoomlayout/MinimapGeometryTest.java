@@ -0,0 +1,42 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MinimapGeometryTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void childIsFitAndCentered() {
+        MinimapGeometry geometry = new MinimapGeometry();
+        assertTrue(geometry.set(2000, 1000, 200, 200));
+
+        assertEquals(0.1f, geometry.getScale(), DELTA);
+        assertEquals(200, geometry.getThumbnailWidth());
+        assertEquals(100, geometry.getThumbnailHeight());
+        assertEquals(0, geometry.getOffsetX(), DELTA);
+        assertEquals(50, geometry.getOffsetY(), DELTA);
+        assertFalse(geometry.set(2000, 1000, 200, 200));
+    }
+
+    @Test
+    public void mappingRoundTrips() {
+        MinimapGeometry geometry = new MinimapGeometry();
+        geometry.set(1000, 3000, 300, 300);
+
+        assertEquals(100, geometry.toMinimapX(0), DELTA);
+        assertEquals(300, geometry.toMinimapY(3000), DELTA);
+        assertEquals(500, geometry.toChildX(geometry.toMinimapX(500)), DELTA);
+        assertEquals(1234, geometry.toChildY(geometry.toMinimapY(1234)), DELTA);
+    }
+
+    @Test
+    public void emptyChildHasNoThumbnail() {
+        MinimapGeometry geometry = new MinimapGeometry();
+        geometry.set(0, 1000, 200, 200);
+
+        assertTrue(geometry.isEmpty());
+    }
+}
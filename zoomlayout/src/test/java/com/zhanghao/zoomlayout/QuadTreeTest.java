@@ -0,0 +1,86 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuadTreeTest {
+
+    private static final int GRID = 100;
+    private static final int CELL = 50;
+    private static final int ITEM = 40;
+
+    private QuadTree mTree;
+    private final int[] mOut = new int[GRID * GRID];
+
+    @Before
+    public void setUp() {
+        mTree = new QuadTree();
+        mTree.reset(0, 0, GRID * CELL, GRID * CELL);
+        // 10000 items laid out on a grid, id = row * GRID + col
+        for (int row = 0; row < GRID; row++) {
+            for (int col = 0; col < GRID; col++) {
+                mTree.insert(row * GRID + col, col * CELL, row * CELL, col * CELL + ITEM, row * CELL + ITEM);
+            }
+        }
+    }
+
+    @Test
+    public void queryReturnsExactlyTheIntersectingItems() {
+        // covers columns 2..5 and rows 10..11
+        int count = mTree.query(120, 510, 290, 590, mOut);
+        Arrays.sort(mOut, 0, count);
+        int[] expected = {1002, 1003, 1004, 1005, 1102, 1103, 1104, 1105};
+        assertArrayEquals(expected, Arrays.copyOf(mOut, count));
+    }
+
+    @Test
+    public void queryMatchesBruteForce() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            float left = random.nextFloat() * GRID * CELL;
+            float top = random.nextFloat() * GRID * CELL;
+            float right = left + random.nextFloat() * 800;
+            float bottom = top + random.nextFloat() * 800;
+            int count = mTree.query(left, top, right, bottom, mOut);
+            Arrays.sort(mOut, 0, count);
+            assertArrayEquals(bruteForce(left, top, right, bottom), Arrays.copyOf(mOut, count));
+        }
+    }
+
+    @Test
+    public void itemsOutsideTheTreeAreaAreFound() {
+        mTree.insert(GRID * GRID, -500, -500, -400, -400);
+        int count = mTree.query(-450, -450, -420, -420, mOut);
+        assertEquals(1, count);
+        assertEquals(GRID * GRID, mOut[0]);
+    }
+
+    @Test
+    public void topmostPrefersTheLargestId() {
+        mTree.insert(GRID * GRID, 0, 0, 200, 200);
+        assertEquals(GRID * GRID, mTree.findTopmost(10, 10));
+        assertEquals(5 * GRID + 5, mTree.findTopmost(5 * CELL + 1, 5 * CELL + 1));
+        // in the gap between two items
+        mTree.reset(0, 0, GRID * CELL, GRID * CELL);
+        mTree.insert(0, 0, 0, ITEM, ITEM);
+        assertEquals(-1, mTree.findTopmost(ITEM + 1, 1));
+    }
+
+    private int[] bruteForce(float left, float top, float right, float bottom) {
+        int[] result = new int[GRID * GRID];
+        int count = 0;
+        for (int row = 0; row < GRID; row++) {
+            for (int col = 0; col < GRID; col++) {
+                if (col * CELL < right && left < col * CELL + ITEM && row * CELL < bottom && top < row * CELL + ITEM) {
+                    result[count++] = row * GRID + col;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
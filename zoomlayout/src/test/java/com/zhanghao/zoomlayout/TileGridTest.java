@@ -0,0 +1,104 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TileGridTest {
+
+    private static final int TILE_SIZE = 256;
+    private static final int VIEWPORT_WIDTH = 1080;
+    private static final int VIEWPORT_HEIGHT = 1920;
+    // image pixels per view pixel, the view fills the viewport at scale 1
+    private static final float IMAGE_SCALE = 16;
+
+    @Test
+    public void sampleSizeIsRoundedDownToAPowerOfTwo() {
+        assertEquals(1, TileGrid.sampleSize(0.5f));
+        assertEquals(1, TileGrid.sampleSize(1.99f));
+        assertEquals(2, TileGrid.sampleSize(2));
+        assertEquals(2, TileGrid.sampleSize(3.99f));
+        assertEquals(8, TileGrid.sampleSize(15));
+    }
+
+    @Test
+    public void indexIsClampedToTheImage() {
+        assertEquals(0, TileGrid.index(-10, 2, 512, 7));
+        assertEquals(3, TileGrid.index(800, 2, 512, 7));
+        assertEquals(7, TileGrid.index(5000, 2, 512, 7));
+    }
+
+    @Test
+    public void visibleTilesStayCachedAtWorstCaseScale() {
+        int maxTiles = TileGrid.maxTilesWithRing(VIEWPORT_WIDTH, VIEWPORT_HEIGHT, TILE_SIZE);
+        // just below the next sample size a tile is shown at half its pixels
+        for (float screenScale : new float[]{1.99f, 3.99f, 7.99f}) {
+            assertEquals("screen scale " + screenScale, 0, panAndCountHoles(maxTiles, screenScale));
+        }
+    }
+
+    @Test
+    public void cacheOfThreeScreensEvictsVisibleTiles() {
+        int maxTiles = 3 * VIEWPORT_WIDTH * VIEWPORT_HEIGHT / (TILE_SIZE * TILE_SIZE);
+
+        assertTrue(panAndCountHoles(maxTiles, 3.99f) > 0);
+    }
+
+    /**
+     * Pans over the image like {@code TiledImageView}: whenever the visible range changes its
+     * missing tiles and the ring around them are decoded into an LRU cache of
+     * {@code maxTiles}, and every frame draws the visible tiles from it.
+     *
+     * @param screenScale image pixels per screen pixel
+     * @return visible tiles missing from the cache in all frames
+     */
+    private static int panAndCountHoles(final int maxTiles, float screenScale) {
+        Map<Long, Boolean> cache = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > maxTiles;
+            }
+        };
+        int imageWidth = Math.round(VIEWPORT_WIDTH * IMAGE_SCALE);
+        int imageHeight = Math.round(VIEWPORT_HEIGHT * IMAGE_SCALE);
+        float scale = IMAGE_SCALE / screenScale;
+        int sampleSize = TileGrid.sampleSize(screenScale);
+        int tileSize = TILE_SIZE * sampleSize;
+        int maxCol = (imageWidth - 1) / tileSize;
+        int maxRow = (imageHeight - 1) / tileSize;
+        int holes = 0;
+        int[] range = {-1, -1, -1, -1};
+        for (int frame = 0; frame < 200; frame++) {
+            float left = 100 + frame * 7.3f / scale;
+            float top = 100 + frame * 11.7f / scale;
+            float right = left + VIEWPORT_WIDTH / scale;
+            float bottom = top + VIEWPORT_HEIGHT / scale;
+            int firstCol = TileGrid.index(left, IMAGE_SCALE, tileSize, maxCol);
+            int firstRow = TileGrid.index(top, IMAGE_SCALE, tileSize, maxRow);
+            int lastCol = TileGrid.index(right, IMAGE_SCALE, tileSize, maxCol);
+            int lastRow = TileGrid.index(bottom, IMAGE_SCALE, tileSize, maxRow);
+            if (firstCol != range[0] || firstRow != range[1] || lastCol != range[2] || lastRow != range[3]) {
+                range = new int[]{firstCol, firstRow, lastCol, lastRow};
+                for (int row = firstRow - 1; row <= lastRow + 1; row++) {
+                    for (int col = firstCol - 1; col <= lastCol + 1; col++) {
+                        long key = TileCache.key(sampleSize, col, row);
+                        if (cache.get(key) == null) {
+                            cache.put(key, true);
+                        }
+                    }
+                }
+            }
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    if (cache.get(TileCache.key(sampleSize, col, row)) == null) {
+                        holes++;
+                    }
+                }
+            }
+        }
+        return holes;
+    }
+}
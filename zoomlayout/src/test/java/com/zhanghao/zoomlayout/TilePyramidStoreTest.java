@@ -0,0 +1,202 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class TilePyramidStoreTest {
+
+    private static final int TILE = 4;
+    private static final int TILE_BYTES = TILE * TILE * 4;
+    // a 16x4 image has 4 tiles, its file is the header, the index and one growth of 16 slots
+    private static final int INDEX_BYTES = 32 + 4 * 8;
+    private static final int PYRAMID_BYTES = INDEX_BYTES + 16 * TILE_BYTES;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = mFolder.newFolder("tiles");
+    }
+
+    @Test
+    public void indexCoversEveryTileOfEveryLevel() throws IOException {
+        TilePyramidFile pyramid = TilePyramidFile.open(null, mFolder.newFile(), "a", 10, 7, TILE, 3);
+        // 3x2 tiles at sample size 1, 2x1 at 2 and 1x1 at 4
+        assertEquals(9, pyramid.getTileCount());
+        assertEquals(0, pyramid.indexOf(1, 0, 0));
+        assertEquals(5, pyramid.indexOf(1, 2, 1));
+        assertEquals(7, pyramid.indexOf(2, 1, 0));
+        assertEquals(8, pyramid.indexOf(4, 0, 0));
+        assertEquals(-1, pyramid.indexOf(1, 3, 0));
+        assertEquals(-1, pyramid.indexOf(3, 0, 0));
+        assertEquals(-1, pyramid.indexOf(8, 0, 0));
+        pyramid.close();
+    }
+
+    @Test
+    public void storedTilesSurviveReopening() throws IOException {
+        File file = mFolder.newFile();
+        TilePyramidFile pyramid = TilePyramidFile.open(null, file, "a", 10, 7, TILE, 3);
+        assertNull(pyramid.getPixels(1, 2, 1));
+        // an edge tile, 2x3 pixels
+        assertTrue(pyramid.put(1, 2, 1, 2, 3, pixels(2 * 3, 7)));
+        assertTrue(pyramid.put(2, 0, 0, TILE, TILE, pixels(TILE * TILE, 1)));
+        assertFalse("wrong size", pyramid.put(4, 0, 0, TILE, TILE, pixels(3, 1)));
+        pyramid.close();
+
+        pyramid = TilePyramidFile.open(null, file, "a", 10, 7, TILE, 3);
+        assertTrue(pyramid.contains(1, 2, 1));
+        assertFalse(pyramid.contains(4, 0, 0));
+        assertEquals(2, pyramid.getTileWidth(1, 2, 1));
+        assertEquals(3, pyramid.getTileHeight(1, 2, 1));
+        assertPixels(pyramid.getPixels(1, 2, 1), 2 * 3, 7);
+        assertPixels(pyramid.getPixels(2, 0, 0), TILE * TILE, 1);
+        pyramid.close();
+    }
+
+    @Test
+    public void readsSeeTilesWrittenAfterTheFileWasMapped() throws IOException {
+        TilePyramidFile pyramid = TilePyramidFile.open(null, mFolder.newFile(), "a", 400, 400, TILE, 1);
+        // more tiles than one growth step of the file
+        for (int col = 0; col < 40; col++) {
+            assertTrue(pyramid.put(1, col, 0, TILE, TILE, pixels(TILE * TILE, col)));
+            assertPixels(pyramid.getPixels(1, col, 0), TILE * TILE, col);
+        }
+        assertPixels(pyramid.getPixels(1, 0, 0), TILE * TILE, 0);
+        // every chunk is mapped once, not the whole file again after every growth
+        assertEquals(3 * 16 * TILE_BYTES, pyramid.getMappedBytes());
+        assertTrue(pyramid.getMappedBytes() < pyramid.length());
+        pyramid.close();
+    }
+
+    @Test
+    public void fileOfAnotherLayoutIsStartedOver() throws IOException {
+        File file = mFolder.newFile();
+        TilePyramidFile pyramid = TilePyramidFile.open(null, file, "a", 10, 7, TILE, 3);
+        pyramid.put(1, 0, 0, TILE, TILE, pixels(TILE * TILE, 1));
+        pyramid.close();
+
+        pyramid = TilePyramidFile.open(null, file, "a", 10, 8, TILE, 3);
+        assertFalse(pyramid.contains(1, 0, 0));
+        pyramid.close();
+    }
+
+    @Test
+    public void unfinishedTileIsIgnored() throws IOException {
+        File file = mFolder.newFile();
+        TilePyramidFile pyramid = TilePyramidFile.open(null, file, "a", 10, 7, TILE, 3);
+        pyramid.put(1, 0, 0, TILE, TILE, pixels(TILE * TILE, 1));
+        pyramid.put(1, 1, 0, TILE, TILE, pixels(TILE * TILE, 2));
+        pyramid.close();
+        // a crash before the slot count of the second tile was written
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(24);
+        raf.writeInt(1);
+        raf.close();
+
+        pyramid = TilePyramidFile.open(null, file, "a", 10, 7, TILE, 3);
+        assertTrue(pyramid.contains(1, 0, 0));
+        assertFalse(pyramid.contains(1, 1, 0));
+        // takes the slot the unfinished tile was written to
+        assertTrue(pyramid.put(2, 0, 0, TILE, TILE, pixels(TILE * TILE, 9)));
+        pyramid.close();
+
+        pyramid = TilePyramidFile.open(null, file, "a", 10, 7, TILE, 3);
+        assertFalse(pyramid.contains(1, 1, 0));
+        assertNull(pyramid.getPixels(1, 1, 0));
+        assertPixels(pyramid.getPixels(2, 0, 0), TILE * TILE, 9);
+        pyramid.close();
+    }
+
+    @Test
+    public void storeEvictsLeastRecentlyUsedClosedPyramids() throws IOException {
+        TilePyramidStore store = new TilePyramidStore(mDirectory, 3 * PYRAMID_BYTES + INDEX_BYTES);
+        fill(store, "old", 1000);
+        fill(store, "recent", 2000);
+        TilePyramidFile open = store.open("open", 16, 4, TILE, 1);
+        open.put(1, 0, 0, TILE, TILE, pixels(TILE * TILE, 1));
+        assertTrue(new File(mDirectory, TilePyramidStore.fileName("old")).exists());
+
+        fill(store, "new", 3000);
+
+        assertFalse(new File(mDirectory, TilePyramidStore.fileName("old")).exists());
+        assertTrue(new File(mDirectory, TilePyramidStore.fileName("recent")).exists());
+        assertTrue(open.contains(1, 0, 0));
+        assertTrue(store.size() <= store.maxSize());
+        assertEquals(store.size(), directorySize());
+        store.close(open);
+    }
+
+    @Test
+    public void storeRefusesTilesWhenOnlyOpenPyramidsAreLeft() throws IOException {
+        TilePyramidStore store = new TilePyramidStore(mDirectory, PYRAMID_BYTES + INDEX_BYTES);
+        TilePyramidFile a = store.open("a", 16, 4, TILE, 1);
+        TilePyramidFile b = store.open("b", 16, 4, TILE, 1);
+        assertTrue(a.put(1, 0, 0, TILE, TILE, pixels(TILE * TILE, 1)));
+        assertFalse(b.put(1, 0, 0, TILE, TILE, pixels(TILE * TILE, 1)));
+        assertFalse(b.contains(1, 0, 0));
+        store.close(a);
+        store.close(b);
+        assertTrue(new File(mDirectory, TilePyramidStore.fileName("a")).exists());
+    }
+
+    @Test
+    public void sameKeyIsOpenedOnce() throws IOException {
+        TilePyramidStore store = new TilePyramidStore(mDirectory, 1 << 20);
+        TilePyramidFile first = store.open("a", 10, 7, TILE, 3);
+        TilePyramidFile second = store.open("a", 10, 7, TILE, 3);
+        assertSame(first, second);
+        store.close(first);
+        // still open for the second user
+        assertTrue(second.put(1, 0, 0, TILE, TILE, pixels(TILE * TILE, 1)));
+        store.close(second);
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, directorySize());
+    }
+
+    private void fill(TilePyramidStore store, String key, long lastModified) throws IOException {
+        TilePyramidFile pyramid = store.open(key, 16, 4, TILE, 1);
+        assertTrue(pyramid.put(1, 0, 0, TILE, TILE, pixels(TILE * TILE, 1)));
+        store.close(pyramid);
+        assertTrue(pyramid.getFile().setLastModified(lastModified));
+    }
+
+    private long directorySize() {
+        long size = 0;
+        for (File file : mDirectory.listFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    private static ByteBuffer pixels(int count, int seed) {
+        ByteBuffer buffer = ByteBuffer.allocate(count * 4);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(seed * 1000 + i);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void assertPixels(ByteBuffer buffer, int count, int seed) {
+        assertNotNull(buffer);
+        assertEquals(count * 4, buffer.remaining());
+        for (int i = 0; i < count; i++) {
+            assertEquals(seed * 1000 + i, buffer.getInt(i * 4));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ViewportSnapshotTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void visibleRectIsTheViewportInChildCoordinates() {
+        ViewportTransform transform = new ViewportTransform();
+        transform.setScaleRange(0.5f, 4f);
+        transform.setContentBounds(0, 0, 1000, 2000);
+        transform.setScrollBounds(0, 0, 500, 1000, 0);
+        transform.setScale(2f, 0, 0);
+        transform.translateBy(-300, -400);
+
+        ViewportSnapshot snapshot = new ViewportSnapshot();
+        snapshot.set(transform, 500, 1000);
+
+        assertEquals(2f, snapshot.getScale(), DELTA);
+        assertEquals(-300, snapshot.getTranslationX(), DELTA);
+        assertEquals(150, snapshot.getVisibleLeft(), DELTA);
+        assertEquals(200, snapshot.getVisibleTop(), DELTA);
+        assertEquals(400, snapshot.getVisibleRight(), DELTA);
+        assertEquals(700, snapshot.getVisibleBottom(), DELTA);
+        assertEquals(transform.getGeneration(), snapshot.getGeneration());
+    }
+}
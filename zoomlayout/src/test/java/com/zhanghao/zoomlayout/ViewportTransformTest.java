@@ -0,0 +1,128 @@
+package com.zhanghao.zoomlayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ViewportTransformTest {
+
+    private static final float DELTA = 1e-4f;
+    private static final float SLOP = 100;
+
+    private ViewportTransform mTransform;
+
+    @Before
+    public void setUp() {
+        mTransform = new ViewportTransform();
+        mTransform.setScaleRange(0.5f, 4f);
+        // 200x200 child centered in a 1000x1000 container
+        mTransform.setContentBounds(400, 400, 200, 200);
+        mTransform.setScrollBounds(0, 0, 1000, 1000, SLOP);
+    }
+
+    @Test
+    public void translationIsClampedToScrollBoundsAtScaleOne() {
+        mTransform.translateBy(-10000, 10000);
+        assertEquals(-500, mTransform.getTranslationX(), DELTA);
+        assertEquals(500, mTransform.getTranslationY(), DELTA);
+    }
+
+    @Test
+    public void translationBoundsFollowTheScale() {
+        mTransform.setScale(4f, 400, 400);
+        // content is now 800 wide and must stay inside [-100, 1100]
+        assertEquals(-500, mTransform.getMinTranslationX(), DELTA);
+        assertEquals(-100, mTransform.getMaxTranslationX(), DELTA);
+        mTransform.translateBy(10000, 0);
+        assertEquals(-100, mTransform.getTranslationX(), DELTA);
+    }
+
+    @Test
+    public void contentLargerThanBoundsCoversThem() {
+        mTransform.setContentBounds(0, 0, 1000, 1000);
+        mTransform.setScale(2f, 0, 0);
+        // content is 2000 wide, its edges may only be pulled SLOP inside the bounds
+        assertEquals(-1100, mTransform.getMinTranslationX(), DELTA);
+        assertEquals(100, mTransform.getMaxTranslationX(), DELTA);
+    }
+
+    @Test
+    public void scaleKeepsFocusPointInPlace() {
+        float[] focus = {450, 480};
+        float[] local = focus.clone();
+        mTransform.invertPoints(local);
+
+        mTransform.setScale(2f, focus[0], focus[1]);
+
+        mTransform.mapPoints(local);
+        assertEquals(focus[0], local[0], DELTA);
+        assertEquals(focus[1], local[1], DELTA);
+    }
+
+    @Test
+    public void scaleIsClampedToRange() {
+        mTransform.setScale(10f, 500, 500);
+        assertEquals(4f, mTransform.getScale(), DELTA);
+        assertFalse(mTransform.scaleBy(2f, 500, 500));
+        mTransform.setScale(0.1f, 500, 500);
+        assertEquals(0.5f, mTransform.getScale(), DELTA);
+    }
+
+    @Test
+    public void inverseMapsBack() {
+        mTransform.setScale(3f, 520, 470);
+        mTransform.translateBy(-30, 45);
+        float[] pts = {12, 34, 150, 199};
+        float[] copy = pts.clone();
+        mTransform.mapPoints(pts);
+        mTransform.invertPoints(pts);
+        for (int i = 0; i < pts.length; i++) {
+            assertEquals(copy[i], pts[i], DELTA);
+        }
+    }
+
+    @Test
+    public void inverseValuesMatchInvertPoints() {
+        mTransform.setScale(2.5f, 300, 700);
+        float[] values = new float[9];
+        mTransform.getInverseValues(values);
+        float[] pts = {640, 360};
+        mTransform.invertPoints(pts);
+        assertEquals(values[0] * 640 + values[2], pts[0], DELTA);
+        assertEquals(values[4] * 360 + values[5], pts[1], DELTA);
+    }
+
+    @Test
+    public void writesWithinAFrameAreAppliedOnce() {
+        TransformTracker tracker = new TransformTracker();
+        assertTrue(tracker.apply(mTransform));
+
+        // one frame worth of input: several pan and scale writes
+        mTransform.translateBy(5, 5);
+        mTransform.translateBy(3, -2);
+        mTransform.scaleBy(1.1f, 500, 500);
+        mTransform.setTranslationX(mTransform.getTranslationX() + 1);
+
+        // the frame applies them once, drawing it again applies nothing
+        assertTrue(tracker.apply(mTransform));
+        assertFalse(tracker.apply(mTransform));
+
+        // a write that changes nothing does not cause an update either
+        mTransform.translateBy(0, 0);
+        assertFalse(tracker.apply(mTransform));
+
+        tracker.invalidate();
+        assertTrue(tracker.apply(mTransform));
+    }
+
+    @Test
+    public void noOpWritesDoNotChangeGeneration() {
+        mTransform.translateBy(-10000, 0);
+        int generation = mTransform.getGeneration();
+        assertFalse(mTransform.translateBy(-1, 0));
+        assertFalse(mTransform.setScrollBounds(0, 0, 1000, 1000, SLOP));
+        assertFalse(mTransform.setContentBounds(400, 400, 200, 200));
+        assertEquals(generation, mTransform.getGeneration());
+    }
+}